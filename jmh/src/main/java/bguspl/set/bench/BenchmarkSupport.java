@@ -0,0 +1,74 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+/**
+ * The game configurations and inputs shared by the JMH benchmarks of the game engine. The benchmarks are packaged
+ * into jmh/target/benchmarks.jar by the build, and run with JMH's own options, e.g.
+ * java -jar jmh/target/benchmarks.jar -rf json -rff results.json [benchmark regex] [-p tableSize=12] [-t threads]
+ */
+final class BenchmarkSupport {
+
+    private static final Logger logger = Logger.getLogger("SetGameBenchmarkLogger");
+
+    static {
+        logger.setUseParentHandlers(false);
+    }
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * @return - the configuration of a game of computer players without delays, logging or a turn timeout, on a table
+     *           of a single row.
+     */
+    static Config config(int featureSize, int featureCount, int tableSize, int players, boolean concurrentTable) {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("FeatureSize", "" + featureSize);
+        properties.setProperty("FeatureCount", "" + featureCount);
+        properties.setProperty("Rows", "1");
+        properties.setProperty("Columns", "" + tableSize);
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "" + players);
+        properties.setProperty("PlayerKeys1", "");
+        properties.setProperty("PlayerKeys2", "");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TurnTimeoutSeconds", "3600");
+        properties.setProperty("ConcurrentTable", "" + concurrentTable);
+        return new Config(logger, properties);
+    }
+
+    static Env env(Config config, UserInterface ui) {
+        return new Env(logger, config, ui, new UtilImpl(config));
+    }
+
+    /**
+     * @return - random combinations of featureSize distinct cards, a third of them sets.
+     */
+    static int[][] randomCombinations(Config config, Util util, int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        int[][] combinations = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int[] cards;
+            do {
+                cards = random.ints(0, config.deckSize).distinct().limit(config.featureSize).toArray();
+                if (i % 3 == 0 && config.featureSize >= 3)
+                    cards[config.featureSize - 1] = util.completeSet(Arrays.copyOf(cards, config.featureSize - 1));
+            } while (Arrays.stream(cards).distinct().count() < config.featureSize || cards[config.featureSize - 1] < 0);
+            combinations[i] = cards;
+        }
+        return combinations;
+    }
+}
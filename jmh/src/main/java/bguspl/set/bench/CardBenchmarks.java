@@ -0,0 +1,86 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks of the card operations of Util: testing random combinations of cards (a third of them sets), looking up
+ * card features, and finding sets in the whole deck (the first set only, as the dealer checks whether the game is
+ * over, and all the sets).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardBenchmarks {
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"3", "4"})
+    public int featureCount;
+
+    private Config config;
+    private Util util;
+    private int[][] combinations;
+    private List<Integer> deck;
+    private int[] features;
+
+    // the index of the next combination or card to use
+    private int next;
+
+    @Setup
+    public void setup() {
+        config = BenchmarkSupport.config(featureSize, featureCount, 12, 2, true);
+        util = new UtilImpl(config);
+        combinations = BenchmarkSupport.randomCombinations(config, util, 1024);
+        deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        features = new int[config.featureCount];
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(combinations[next++ & 1023]);
+    }
+
+    @Benchmark
+    public int[] cardToFeatures() {
+        if (next >= config.deckSize) next = 0;
+        util.cardToFeatures(next++, features);
+        return features;
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(combinations[next++ & 1023]);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsDeckFirst() {
+        return util.findSets(deck, 1);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsDeckAll() {
+        return util.findSets(deck, Integer.MAX_VALUE);
+    }
+}
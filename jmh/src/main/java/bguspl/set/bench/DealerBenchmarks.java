@@ -0,0 +1,82 @@
+package bguspl.set.bench;
+
+import bguspl.set.Env;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the round trip of a claim through the dealer: a player places tokens on cards that are not a set, claims
+ * them, and waits for the dealer's verdict (which removes the tokens). This runs the whole claim path of the dealer
+ * thread except for replacing cards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DealerBenchmarks {
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"3", "4"})
+    public int featureCount;
+
+    private Table table;
+    private Dealer dealer;
+    private Player player;
+    private Thread dealerThread;
+
+    // the slots of cards that are not a set
+    private int[] slots;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        UserInterfaceStub ui = new UserInterfaceStub();
+        Env env = BenchmarkSupport.env(BenchmarkSupport.config(featureSize, featureCount, 12, 1, true), ui);
+        table = new Table(env);
+        Player[] players = new Player[1];
+        dealer = new Dealer(env, table, players);
+        player = new Player(env, dealer, table, 0, true);
+        players[0] = player;
+        dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        slots = ui.waitForNonSet(env);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        dealer.terminate();
+        dealerThread.interrupt();
+        dealerThread.join();
+    }
+
+    @Benchmark
+    public Player.panishOrScore claimRoundTrip() throws InterruptedException, ExecutionException {
+        player.setLock.lock();
+        try {
+            for (int slot : slots)
+                if (table.placeToken(player.id, slot)) player.set.set(slot);
+        } finally {
+            player.setLock.unlock();
+        }
+        return dealer.submitClaim(player).get();
+    }
+}
@@ -0,0 +1,90 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.ex.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks the token operations of the table: every benchmark thread is a player that places or removes its token
+ * on a random slot of a full table, alone and with other players contending for the table (run with -t to try other
+ * numbers of players, up to MAX_PLAYERS).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableBenchmarks {
+
+    /**
+     * The number of players of the benchmarked game (the maximal number of benchmark threads).
+     */
+    public static final int MAX_PLAYERS = 64;
+
+    @Param({"12", "15", "21"})
+    public int tableSize;
+
+    @Param({"true", "false"})
+    public boolean concurrentTable;
+
+    private Table table;
+
+    @Setup
+    public void setup() {
+        Config config = BenchmarkSupport.config(3, 4, tableSize, MAX_PLAYERS, concurrentTable);
+        table = new Table(BenchmarkSupport.env(config, new UserInterfaceStub()));
+        for (int slot = 0; slot < tableSize; slot++)
+            table.placeCard(slot, slot);
+    }
+
+    /**
+     * The player of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class PlayerState {
+
+        private static final AtomicInteger nextId = new AtomicInteger();
+
+        private int id;
+        private SplittableRandom random;
+
+        @Setup
+        public void setup() {
+            id = nextId.getAndIncrement() % MAX_PLAYERS;
+            random = new SplittableRandom(id);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean toggleToken(PlayerState player) {
+        return toggle(player);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean toggleTokenContended(PlayerState player) {
+        return toggle(player);
+    }
+
+    private boolean toggle(PlayerState player) {
+        int slot = player.random.nextInt(tableSize);
+        return !table.removeToken(player.id, slot) && table.placeToken(player.id, slot);
+    }
+}
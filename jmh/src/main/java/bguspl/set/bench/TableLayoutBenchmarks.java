@@ -0,0 +1,68 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks finding all the sets in random table layouts (as for hints).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableLayoutBenchmarks {
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"3", "4"})
+    public int featureCount;
+
+    @Param({"12", "15", "21"})
+    public int tableSize;
+
+    private Util util;
+    private List<List<Integer>> layouts;
+
+    // the index of the next layout to use
+    private int next;
+
+    @Setup
+    public void setup() {
+        Config config = BenchmarkSupport.config(featureSize, featureCount, tableSize, 2, true);
+        util = new UtilImpl(config);
+        SplittableRandom random = new SplittableRandom(17);
+        layouts = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            int[] cards = random.ints(0, config.deckSize).distinct().limit(Math.min(tableSize, config.deckSize))
+                    .toArray();
+            layouts.add(Arrays.stream(cards).boxed().collect(Collectors.toList()));
+        }
+    }
+
+    @Benchmark
+    public List<int[]> findSetsAll() {
+        return util.findSets(layouts.get(next++ & 63), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,89 @@
+package bguspl.set.bench;
+
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A user interface that does nothing but remember which card is in each slot.
+ */
+class UserInterfaceStub implements UserInterface {
+
+    private final int[] slotToCard = new int[64];
+
+    UserInterfaceStub() {
+        Arrays.fill(slotToCard, -1);
+    }
+
+    /**
+     * Waits until the dealer dealt a full table, and picks featureSize cards that are not a set.
+     *
+     * @return - the slots of the cards.
+     */
+    synchronized int[] waitForNonSet(Env env) throws InterruptedException {
+        int[] slots = IntStream.range(0, env.config.featureSize).toArray();
+        while (true) {
+            if (Arrays.stream(slotToCard, 0, env.config.tableSize).allMatch(card -> card >= 0)) {
+                for (int last = env.config.featureSize - 1; last < env.config.tableSize; last++) {
+                    slots[slots.length - 1] = last;
+                    int[] cards = Arrays.stream(slots).map(slot -> slotToCard[slot]).toArray();
+                    if (!env.util.testSet(cards)) return slots;
+                }
+            }
+            wait(10);
+        }
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        slotToCard[slot] = card;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        slotToCard[slot] = -1;
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+    }
+
+    @Override
+    public void removeTokens() {
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
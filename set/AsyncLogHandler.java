@@ -0,0 +1,215 @@
+package bguspl.set;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A log handler that writes records to a file on a background thread. Logging threads only put the records in a
+ * lock-free ring buffer (many producers, one consumer); the writer thread formats them and writes them in batches
+ * through a buffered writer, flushing whenever it runs out of records.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The number of records the ring buffer holds (a power of 2).
+     */
+    private static final int capacity = 1 << 14;
+
+    /**
+     * The longest time the writer thread sleeps before checking for records again.
+     */
+    private static final long writerNapMillis = 100;
+
+    private final AtomicReferenceArray<LogRecord> records;
+
+    /**
+     * The sequence number each cell of the ring buffer expects next: i for a cell that is free for the record with
+     * sequence number i, i + 1 for a cell holding the record with sequence number i.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * The sequence number of the next record to publish (claimed by producers).
+     */
+    private final AtomicLong tail;
+
+    /**
+     * The sequence number of the next record to write (only written by the writer thread).
+     */
+    private volatile long head;
+
+    /**
+     * The sequence number up to which records were written and flushed to the file.
+     */
+    private volatile long flushed;
+
+    private volatile boolean writerWaiting;
+    private volatile boolean closed;
+
+    private final Writer writer;
+    private final Thread writerThread;
+
+    /**
+     * @param filename - the log file to append to.
+     * @throws IOException - if the file cannot be opened.
+     */
+    public AsyncLogHandler(String filename) throws IOException {
+        records = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+        tail = new AtomicLong();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename, true)), 1 << 16);
+        writerThread = new Thread(this::writeLoop, "logger");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Logs a message whose text is only built when it is formatted (i.e. on the writer thread when this handler is
+     * used), instead of on the logging thread.
+     *
+     * @param logger  - the logger.
+     * @param level   - the level of the message.
+     * @param message - builds the text of the message.
+     */
+    public static void log(Logger logger, Level level, Supplier<String> message) {
+        if (!logger.isLoggable(level)) return;
+        LogRecord record = new LazyLogRecord(level, message);
+        record.setLoggerName(logger.getName());
+        logger.log(record);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        while (true) {
+            long sequence = tail.get();
+            int index = (int) (sequence & (capacity - 1));
+            long available = sequences.get(index) - sequence;
+            if (available == 0 && tail.compareAndSet(sequence, sequence + 1)) {
+                records.set(index, record);
+                sequences.set(index, sequence + 1);
+                break;
+            } else if (available < 0) { // the ring buffer is full, let the writer catch up
+                LockSupport.unpark(writerThread);
+                Thread.yield();
+            }
+        }
+        if (writerWaiting) LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * The main loop of the writer thread.
+     */
+    private void writeLoop() {
+        while (!closed || head != tail.get()) {
+            if (!writeAvailable()) {
+                writerWaiting = true;
+                if (head == tail.get() && !closed)
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(writerNapMillis));
+                writerWaiting = false;
+            }
+        }
+    }
+
+    /**
+     * Writes all the published records, and flushes the file.
+     *
+     * @return - true iff any records were written.
+     */
+    private boolean writeAvailable() {
+        long first = head;
+        while (true) {
+            int index = (int) (head & (capacity - 1));
+            if (sequences.get(index) != head + 1) break; // not published yet
+            LogRecord record = records.get(index);
+            records.set(index, null);
+            sequences.set(index, head + capacity);
+            head = head + 1;
+            write(record);
+        }
+        if (head == first) return false;
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+        flushed = head;
+        return true;
+    }
+
+    private void write(LogRecord record) {
+        try {
+            writer.write(getFormatter().format(record));
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    /**
+     * Waits until all the records published so far are written to the file.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (flushed < target && writerThread.isAlive()) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+            writer.close();
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * A log record whose message is built when it is first requested.
+     */
+    private static class LazyLogRecord extends LogRecord {
+
+        private static final long serialVersionUID = 1L;
+
+        private Supplier<String> message;
+
+        private LazyLogRecord(Level level, Supplier<String> message) {
+            super(level, null);
+            this.message = message;
+        }
+
+        @Override
+        public synchronized String getMessage() {
+            if (message != null) {
+                setMessage(message.get());
+                message = null;
+            }
+            return super.getMessage();
+        }
+    }
+}
@@ -36,6 +36,11 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The minimal number of cards for which Util::findSets splits its search between all the cores (0 to never do so)
+     */
+    public final int parallelFindSetsThreshold;
+
     /**
      * The number of human players in the game.
      */
@@ -86,6 +91,55 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * Whether each slot of the table is locked separately (otherwise a single lock guards the whole table).
+     * Experimental: off by default
+     */
+    public final boolean concurrentTable;
+
+    /**
+     * Whether to run the player threads (and the AI threads of computer players) as virtual threads (Java 21+)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * How computer players choose their key presses: "random" (random slots) or "solver" (the slots of a set on the
+     * table, after a reaction time and with a probability of pressing a wrong slot)
+     */
+    public final String aiStrategy;
+    public final long aiReactionMillis;
+    public final double aiErrorRate;
+
+    /**
+     * How the dealer chooses the cards to deal into empty slots: "random" (the top of the deck) or "set" (cards that
+     * complete a set on the table, when the table would otherwise have none)
+     */
+    public final String dealingStrategy;
+
+    /**
+     * Whether log records are written to the log file by a background thread (otherwise by the logging thread).
+     * Off by default
+     */
+    public final boolean asyncLogging;
+
+    /**
+     * The file to record the game events to (see GameJournal), or empty to not record them
+     */
+    public final String journalFile;
+
+    /**
+     * Whether to collect game metrics and expose them through JMX (see GameMetrics).
+     * Off by default
+     */
+    public final boolean metrics;
+
+    /**
+     * Whether to trace every key press through the input pipeline (see PressTracer), and the total latency above
+     * which a key press trace is logged (0 to never log traces)
+     */
+    public final boolean tracePresses;
+    public final long slowPressTraceNanos;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -107,6 +161,17 @@ public class Config {
      */
     public final int tableSize;
 
+    /**
+     * The maximal number of overflow slots the dealer may deal extra cards into while there is no set on the table
+     * (0 to disable). The overflow slots follow the grid slots, and are displayed in extra rows below the grid
+     */
+    public final int maxOverflowSlots;
+
+    /**
+     * The total number of slots on the table, including the overflow slots
+     */
+    public final int maxTableSize;
+
     /**
      * The width (in pixels) of each cell
      */
@@ -138,6 +203,7 @@ public class Config {
      * 1. This should correspond to the number of human players and the dimensions of the table card grid (i.e. the
      * first n codes are for the first row, the 2nd n codes are for the 2nd row etc., n being the number of columns).
      * 2. If the number of entries here does not match the number of human players a warning will be issued
+     * 3. The codes of the overflow slots (if any) may follow the codes of the grid slots
      */
     private final int[][] playerKeys;
 
@@ -155,7 +221,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -186,6 +252,11 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        asyncLogging = Boolean.parseBoolean(properties.getProperty("AsyncLogging", "False"));
+        journalFile = properties.getProperty("JournalFile", "").trim();
+        metrics = Boolean.parseBoolean(properties.getProperty("Metrics", "False"));
+        tracePresses = Boolean.parseBoolean(properties.getProperty("TracePresses", "False"));
+        slowPressTraceNanos = (long) (Double.parseDouble(properties.getProperty("SlowPressTraceSeconds", "0")) * 1e9);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -197,6 +268,7 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        parallelFindSetsThreshold = Integer.parseInt(properties.getProperty("ParallelFindSetsThreshold", "243"));
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -210,6 +282,12 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        concurrentTable = Boolean.parseBoolean(properties.getProperty("ConcurrentTable", "False"));
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        aiStrategy = properties.getProperty("AiStrategy", "random").trim().toLowerCase();
+        aiReactionMillis = (long) (Double.parseDouble(properties.getProperty("AiReactionSeconds", "1")) * 1000.0);
+        aiErrorRate = Double.parseDouble(properties.getProperty("AiErrorRate", "0"));
+        dealingStrategy = properties.getProperty("DealingStrategy", "random").trim().toLowerCase();
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -219,6 +297,8 @@ public class Config {
         rows = Integer.parseInt(properties.getProperty("Rows", "3"));
         columns = Integer.parseInt(properties.getProperty("Columns", "4"));
         tableSize = rows * columns;
+        maxOverflowSlots = Math.max(Integer.parseInt(properties.getProperty("MaxOverflowSlots", "0")), 0);
+        maxTableSize = tableSize + maxOverflowSlots;
         cellWidth = Integer.parseInt(properties.getProperty("CellWidth", "258"));
         cellHeight = Integer.parseInt(properties.getProperty("CellHeight", "167"));
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
@@ -226,16 +306,16 @@ public class Config {
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
 
         // keyboard input data
-        playerKeys = new int[players][rows * columns];
+        playerKeys = new int[players][maxTableSize];
         for (int i = 0; i < players; i++) {
             String defaultCodes = "";
             if (i < 2) defaultCodes = playerKeysDefaults[i];
             String playerKeysString = properties.getProperty("PlayerKeys" + (i + 1), defaultCodes);
             if (playerKeysString.length() > 0) {
                 String[] codes = playerKeysString.split(",");
-                if (codes.length != tableSize)
+                if (codes.length != tableSize && codes.length != maxTableSize)
                     logger.severe("warning: player " + (i + 1) + " keys (" + codes.length + ") mismatch table size (" + tableSize + ").");
-                for (int j = 0; j < Math.min(codes.length, tableSize); ++j) // parse the key codes string
+                for (int j = 0; j < Math.min(codes.length, maxTableSize); ++j) // parse the key codes string
                     playerKeys[i][j] = Integer.parseInt(codes[j]);
             }
         }
@@ -8,11 +8,22 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameJournal journal;
+    public final GameMetrics metrics;
+    public final PressTracer tracer;
 
-    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameJournal journal, GameMetrics metrics,
+               PressTracer tracer) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.tracer = tracer;
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new GameJournal(), new GameMetrics(), new PressTracer());
     }
 }
@@ -0,0 +1,246 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary journal of all the events that change the game state, written through a buffered file channel.
+ * The journal starts with a header (the magic number, the version, the start time and the dimensions of the game),
+ * followed by the event records: the time of the event in nanoseconds since the journal started (monotonic), the
+ * event type and two int arguments, followed by a list of ints for events that carry one (claims and shuffles).
+ * If config.journalFile is empty the journal is disabled and recording events does nothing. If writing the journal
+ * fails (e.g. the disk is full), the failure is logged and the journal is disabled, so the game goes on without it.
+ */
+public class GameJournal implements AutoCloseable {
+
+    public static final int MAGIC = 0x5345544A; // "SETJ"
+    public static final int VERSION = 2;
+
+    /**
+     * The event types, and their arguments.
+     */
+    public static final byte PLACE_CARD = 1;   // card, slot
+    public static final byte REMOVE_CARD = 2;  // card, slot
+    public static final byte PLACE_TOKEN = 3;  // player, slot
+    public static final byte REMOVE_TOKEN = 4; // player, slot
+    public static final byte CLAIM = 5;        // player, number of slots (followed by the slots)
+    public static final byte VERDICT = 6;      // player, verdict (0 - none, 1 - point, 2 - penalty)
+    public static final byte SHUFFLE = 7;      // 0, number of cards (followed by the cards, in deck order)
+
+    /**
+     * The size of an event record (without its list of ints).
+     */
+    public static final int RECORD_SIZE = Long.BYTES + 1 + 2 * Integer.BYTES;
+
+    private static final int bufferSize = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final long startNanos;
+
+    /**
+     * Guards the buffer and the channel (a lock rather than a monitor, so virtual threads do not pin their carriers).
+     */
+    private final ReentrantLock lock;
+
+    private final Logger logger;
+
+    /**
+     * True once writing the journal failed (the journal is then disabled).
+     */
+    private volatile boolean failed;
+
+    /**
+     * Creates a disabled journal.
+     */
+    public GameJournal() {
+        channel = null;
+        buffer = null;
+        startNanos = 0;
+        lock = null;
+        logger = null;
+    }
+
+    /**
+     * Creates the journal file config.journalFile (replacing any existing one), unless it is empty.
+     *
+     * @param logger - the logger, for reporting a journal that cannot be created.
+     * @param config - the game configuration.
+     */
+    public GameJournal(Logger logger, Config config) {
+        FileChannel channel = null;
+        if (!config.journalFile.isEmpty()) {
+            try {
+                channel = FileChannel.open(Paths.get(config.journalFile), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                logger.severe("cannot create journal file " + config.journalFile + ": " + e.getMessage());
+            }
+        }
+        this.channel = channel;
+        this.buffer = channel == null ? null : ByteBuffer.allocateDirect(bufferSize);
+        this.startNanos = System.nanoTime();
+        this.lock = new ReentrantLock();
+        this.logger = logger;
+        if (channel != null)
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis())
+                    .putInt(config.featureSize).putInt(config.featureCount).putInt(config.tableSize)
+                    .putInt(config.maxTableSize).putInt(config.players);
+    }
+
+    /**
+     * @return - true iff events are recorded.
+     */
+    public boolean isEnabled() {
+        return channel != null && !failed;
+    }
+
+    public void placeCard(int card, int slot) {
+        record(PLACE_CARD, card, slot);
+    }
+
+    public void removeCard(int card, int slot) {
+        record(REMOVE_CARD, card, slot);
+    }
+
+    public void placeToken(int player, int slot) {
+        record(PLACE_TOKEN, player, slot);
+    }
+
+    public void removeToken(int player, int slot) {
+        record(REMOVE_TOKEN, player, slot);
+    }
+
+    /**
+     * @param player - the player claiming a set.
+     * @param slots  - the slots of the cards in the claimed set.
+     */
+    public void claim(int player, int[] slots) {
+        if (!isEnabled()) return;
+        lock.lock();
+        try {
+            if (!reserve(RECORD_SIZE + slots.length * Integer.BYTES)) return;
+            putRecord(CLAIM, player, slots.length);
+            for (int slot : slots)
+                buffer.putInt(slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param player  - the player whose claim was checked.
+     * @param verdict - 0 if the claim was dismissed, 1 if the player got a point and 2 if the player was penalized.
+     */
+    public void verdict(int player, int verdict) {
+        record(VERDICT, player, verdict);
+    }
+
+    /**
+     * @param deck - the cards of the deck, in their order after the shuffle.
+     */
+    public void shuffle(int[] deck) {
+        if (!isEnabled()) return;
+        lock.lock();
+        try {
+            if (!reserve(RECORD_SIZE + deck.length * Integer.BYTES)) return;
+            putRecord(SHUFFLE, 0, deck.length);
+            for (int card : deck)
+                buffer.putInt(card);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(byte type, int a, int b) {
+        if (!isEnabled()) return;
+        lock.lock();
+        try {
+            if (!reserve(RECORD_SIZE)) return;
+            putRecord(type, a, b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putRecord(byte type, int a, int b) {
+        buffer.putLong(System.nanoTime() - startNanos).put(type).putInt(a).putInt(b);
+    }
+
+    /**
+     * Makes sure the buffer has room for a record, writing it to the file if needed (only called with the lock held).
+     *
+     * @return - true iff the record can be written (false if the journal is disabled).
+     */
+    private boolean reserve(int size) {
+        if (failed) return false;
+        if (buffer.remaining() >= size) return true;
+        writeBuffer();
+        if (failed) return false;
+        if (buffer.remaining() < size) {
+            fail("record too large (" + size + " bytes)");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the buffer to the file (only called with the lock held).
+     */
+    private void writeBuffer() {
+        if (failed) return;
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            fail(e.toString());
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Logs a failure to write the journal and disables it (only called with the lock held).
+     */
+    private void fail(String reason) {
+        failed = true;
+        logger.severe("cannot write the journal, disabling it: " + reason);
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Writes all the recorded events to the file.
+     */
+    public void flush() {
+        if (!isEnabled()) return;
+        lock.lock();
+        try {
+            writeBuffer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!isEnabled()) return;
+        lock.lock();
+        try {
+            writeBuffer();
+            if (!failed) channel.close();
+        } catch (IOException e) {
+            logger.severe("cannot close the journal: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package bguspl.set;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Low overhead metrics of a game: per player counters of claims and dropped key presses, the depth of the dealer's
+ * claim queue, and histograms of the claim to verdict latency, the dealer loop iterations, the time the table slot
+ * locks are held and the time of the user interface calls. Counters are LongAdders, so game threads updating them do
+ * not contend. If config.metrics is off nothing is measured, and the timers do not even read the clock.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    /**
+     * The name the metrics are registered under.
+     */
+    public static final String OBJECT_NAME = "bguspl.set:type=GameMetrics";
+
+    private final boolean enabled;
+
+    private final LongAdder[] claimsSubmitted;
+    private final LongAdder[] claimsValidated;
+    private final LongAdder[] claimsRejected;
+    private final LongAdder claimQueueDepth;
+    private final LongAdder[] droppedQueueFull;
+    private final LongAdder[] droppedFrozen;
+    private final LatencyHistogram claimLatency;
+    private final LatencyHistogram dealerIteration;
+    private final LatencyHistogram tableLockHold;
+    private final LatencyHistogram uiCall;
+
+    /**
+     * Creates metrics that measure nothing.
+     */
+    public GameMetrics() {
+        this(false, 0);
+    }
+
+    /**
+     * @param config - the game configuration.
+     */
+    public GameMetrics(Config config) {
+        this(config.metrics, config.players);
+    }
+
+    private GameMetrics(boolean enabled, int players) {
+        this.enabled = enabled;
+        this.claimsSubmitted = adders(players);
+        this.claimsValidated = adders(players);
+        this.claimsRejected = adders(players);
+        this.droppedQueueFull = adders(players);
+        this.droppedFrozen = adders(players);
+        this.claimQueueDepth = new LongAdder();
+        this.claimLatency = new LatencyHistogram();
+        this.dealerIteration = new LatencyHistogram();
+        this.tableLockHold = new LatencyHistogram();
+        this.uiCall = new LatencyHistogram();
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++)
+            sums[i] = adders[i].sum();
+        return sums;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param logger - the logger, for reporting a failure to register.
+     */
+    public void register(Logger logger) {
+        if (!enabled) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.severe("cannot register the game metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server (if they were registered).
+     */
+    public void unregister() {
+        if (!enabled) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (JMException ignored) {
+        }
+    }
+
+    /**
+     * @return - the current time to pass to one of the timed methods, or 0 if nothing is measured.
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void claimSubmitted(int player) {
+        if (!enabled) return;
+        claimsSubmitted[player].increment();
+        claimQueueDepth.increment();
+    }
+
+    /**
+     * Called when the dealer takes a claim out of its queue.
+     */
+    public void claimDequeued() {
+        if (enabled) claimQueueDepth.decrement();
+    }
+
+    /**
+     * @param player    - the player whose claim was checked.
+     * @param validated - true iff the claimed cards were a set.
+     * @param submitted - the time the claim was submitted (System.nanoTime).
+     */
+    public void claimChecked(int player, boolean validated, long submitted) {
+        if (!enabled) return;
+        (validated ? claimsValidated : claimsRejected)[player].increment();
+        claimLatency.record(System.nanoTime() - submitted);
+    }
+
+    public void keyPressDroppedQueueFull(int player) {
+        if (enabled) droppedQueueFull[player].increment();
+    }
+
+    public void keyPressDroppedFrozen(int player) {
+        if (enabled) droppedFrozen[player].increment();
+    }
+
+    /**
+     * @param start - the value of startTimer when the iteration started.
+     */
+    public void dealerIteration(long start) {
+        if (enabled) dealerIteration.record(System.nanoTime() - start);
+    }
+
+    /**
+     * @param start - the value of startTimer when the lock was acquired.
+     */
+    public void tableLockHeld(long start) {
+        if (enabled) tableLockHold.record(System.nanoTime() - start);
+    }
+
+    /**
+     * @param start - the value of startTimer when the call started.
+     */
+    public void uiCall(long start) {
+        if (enabled) uiCall.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public long[] getClaimsSubmitted() {
+        return sums(claimsSubmitted);
+    }
+
+    @Override
+    public long[] getClaimsValidated() {
+        return sums(claimsValidated);
+    }
+
+    @Override
+    public long[] getClaimsRejected() {
+        return sums(claimsRejected);
+    }
+
+    @Override
+    public long getClaimQueueDepth() {
+        return claimQueueDepth.sum();
+    }
+
+    @Override
+    public long[] getKeyPressesDroppedQueueFull() {
+        return sums(droppedQueueFull);
+    }
+
+    @Override
+    public long[] getKeyPressesDroppedFrozen() {
+        return sums(droppedFrozen);
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getClaimLatency() {
+        return claimLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getDealerIteration() {
+        return dealerIteration.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getTableLockHold() {
+        return tableLockHold.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getUiCall() {
+        return uiCall.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder[] adders : new LongAdder[][]{claimsSubmitted, claimsValidated, claimsRejected, droppedQueueFull,
+                droppedFrozen})
+            for (LongAdder adder : adders)
+                adder.reset();
+        claimLatency.reset();
+        dealerIteration.reset();
+        tableLockHold.reset();
+        uiCall.reset();
+    }
+}
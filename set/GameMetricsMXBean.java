@@ -0,0 +1,33 @@
+package bguspl.set;
+
+/**
+ * The management interface of the game metrics (see GameMetrics), for JConsole or any other JMX client.
+ * The per player attributes hold an entry for each player, by player id.
+ */
+public interface GameMetricsMXBean {
+
+    long[] getClaimsSubmitted();
+
+    long[] getClaimsValidated();
+
+    long[] getClaimsRejected();
+
+    long getClaimQueueDepth();
+
+    long[] getKeyPressesDroppedQueueFull();
+
+    long[] getKeyPressesDroppedFrozen();
+
+    LatencyHistogram.Snapshot getClaimLatency();
+
+    LatencyHistogram.Snapshot getDealerIteration();
+
+    LatencyHistogram.Snapshot getTableLockHold();
+
+    LatencyHistogram.Snapshot getUiCall();
+
+    /**
+     * Clears all the counters and histograms (but not the claim queue depth, which is a gauge).
+     */
+    void reset();
+}
@@ -0,0 +1,50 @@
+package bguspl.set;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class creates the threads of the game entities: virtual threads if config.virtualThreads is on and the JVM
+ * supports them (Java 21 or later), and platform threads otherwise.
+ */
+public class GameThreads {
+
+    /**
+     * The factory of virtual threads (null if the JVM does not support them).
+     */
+    private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+
+    /**
+     * Looks up Thread.ofVirtual().factory() by reflection, so the game still compiles and runs on older JVMs.
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return - true iff the JVM supports virtual threads.
+     */
+    public static boolean virtualThreadsSupported() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Creates a new (unstarted) thread.
+     *
+     * @param config - the game configuration.
+     * @param target - the runnable to run in the thread.
+     * @param name   - the name of the thread.
+     * @return - a virtual thread if config.virtualThreads is on and supported, a platform thread otherwise.
+     */
+    public static Thread newThread(Config config, Runnable target, String name) {
+        if (!config.virtualThreads || virtualThreadFactory == null)
+            return new Thread(target, name);
+        Thread thread = virtualThreadFactory.newThread(target);
+        thread.setName(name);
+        return thread;
+    }
+}
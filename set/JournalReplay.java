@@ -0,0 +1,186 @@
+package bguspl.set;
+
+import bguspl.set.ex.Table;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Replays a game journal (see GameJournal) onto a table: the recorded card and token events are applied in order,
+ * either at the recorded pace multiplied by a speed factor or as fast as possible, and every recorded verdict is
+ * checked against the cards that were on the table when the claim was made.
+ * Only the table is driven: no dealer or player threads run, so the dealer's claim handling is not re-executed; the
+ * recorded verdicts are checked by testing the claimed cards with Util.testSet.
+ * Usage: JournalReplay journal-file [speed] (speed 0, the default, replays without waiting; 1 is real time).
+ */
+public class JournalReplay {
+
+    private final Env env;
+    private final Table table;
+    private final double speed;
+
+    // the cards on the table during the replay (-1 if none)
+    private final int[] slotToCard;
+
+    // the cards of the last claim of each player (as they were on the table when the claim was recorded)
+    private final int[][] claims;
+
+    private long events;
+    private long verdicts;
+    private long mismatches;
+    private long shuffles;
+
+    public JournalReplay(Env env, double speed) {
+        this.env = env;
+        this.table = new Table(env);
+        this.speed = speed;
+        this.slotToCard = new int[env.config.maxTableSize];
+        Arrays.fill(slotToCard, -1);
+        this.claims = new int[env.config.players][];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: JournalReplay journal-file [speed]");
+            return;
+        }
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+
+        Logger logger = Logger.getLogger("SetGameReplayLogger");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties("config.properties", logger);
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("JournalFile", "");
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util);
+
+        JournalReplay replay = new JournalReplay(env, speed);
+        long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(args[0]))))) {
+            replay.replay(in);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("replayed %d events (%d shuffles, %d verdicts) in %.3f s (%.0f events/s), %d verdict mismatches%n",
+                replay.events, replay.shuffles, replay.verdicts, elapsed / 1e9, replay.events * 1e9 / Math.max(elapsed, 1),
+                replay.mismatches);
+    }
+
+    /**
+     * Replays all the events of a journal.
+     *
+     * @param in - the journal, positioned at its start.
+     * @throws IOException - if the journal cannot be read or does not match the game configuration.
+     */
+    public void replay(DataInputStream in) throws IOException {
+        readHeader(in);
+        long start = System.nanoTime();
+        while (true) {
+            long time;
+            try {
+                time = in.readLong();
+            } catch (EOFException e) {
+                break;
+            }
+            byte type = in.readByte();
+            int a = in.readInt();
+            int b = in.readInt();
+            int[] list = type == GameJournal.CLAIM || type == GameJournal.SHUFFLE ? new int[b] : null;
+            for (int i = 0; list != null && i < list.length; i++)
+                list[i] = in.readInt();
+            if (speed > 0)
+                waitUntil(start + (long) (time / speed));
+            apply(type, a, b, list);
+            events++;
+        }
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != GameJournal.MAGIC) throw new IOException("not a game journal");
+        int version = in.readInt();
+        if (version != GameJournal.VERSION) throw new IOException("unsupported journal version " + version);
+        in.readLong(); // the time the game started
+        int featureSize = in.readInt();
+        int featureCount = in.readInt();
+        int tableSize = in.readInt();
+        int maxTableSize = in.readInt();
+        int players = in.readInt();
+        Config config = env.config;
+        if (featureSize != config.featureSize || featureCount != config.featureCount || tableSize != config.tableSize
+                || maxTableSize != config.maxTableSize || players > config.players)
+            throw new IOException("the journal does not match the configuration: feature size " + featureSize
+                    + ", feature count " + featureCount + ", table size " + tableSize + ", max table size "
+                    + maxTableSize + ", players " + players);
+    }
+
+    private void apply(byte type, int a, int b, int[] list) throws IOException {
+        switch (type) {
+            case GameJournal.PLACE_CARD:
+                table.placeCard(a, b);
+                slotToCard[b] = a;
+                break;
+            case GameJournal.REMOVE_CARD:
+                table.removeCard(b);
+                slotToCard[b] = -1;
+                break;
+            case GameJournal.PLACE_TOKEN:
+                table.placeToken(a, b);
+                break;
+            case GameJournal.REMOVE_TOKEN:
+                table.removeToken(a, b);
+                break;
+            case GameJournal.CLAIM:
+                int[] cards = new int[list.length];
+                for (int i = 0; i < list.length; i++)
+                    cards[i] = slotToCard[list[i]];
+                claims[a] = cards;
+                break;
+            case GameJournal.VERDICT:
+                checkVerdict(a, b);
+                break;
+            case GameJournal.SHUFFLE:
+                shuffles++;
+                break;
+            default:
+                throw new IOException("unknown journal event type " + type);
+        }
+    }
+
+    /**
+     * Checks a recorded verdict against the cards that were on the table when the player's claim was recorded.
+     */
+    private void checkVerdict(int player, int verdict) {
+        int[] cards = claims[player];
+        claims[player] = null;
+        if (cards == null) {
+            if (verdict != 0) mismatches++; // a verdict without a claim
+            return;
+        }
+        verdicts++;
+        int expected = Arrays.stream(cards).allMatch(card -> card >= 0) && env.util.testSet(cards) ? 1 : 2;
+        if (verdict != expected) {
+            mismatches++;
+            env.logger.severe("verdict mismatch for player " + (player + 1) + ": recorded " + verdict + " expected "
+                    + expected);
+        }
+    }
+
+    private static void waitUntil(long nanos) {
+        long remaining = nanos - System.nanoTime();
+        if (remaining > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
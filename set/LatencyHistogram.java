@@ -0,0 +1,117 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, with a bucket per power of 2 (bucket i counts the durations d
+ * with 2^(i-1) <= d < 2^i, bucket 0 counts the zero durations). Percentiles are reported as the upper bound of their
+ * bucket, so they are accurate to within a factor of 2.
+ */
+public class LatencyHistogram {
+
+    private static final int buckets = 64;
+
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(buckets);
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * @param nanos - a duration in nanoseconds (negative durations are counted as 0).
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(Math.min(buckets - Long.numberOfLeadingZeros(nanos), buckets - 1));
+        sum.add(nanos);
+        if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Clears the histogram (durations recorded concurrently may be partially cleared).
+     */
+    public void reset() {
+        for (int i = 0; i < buckets; i++)
+            counts.set(i, 0);
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return - a copy of the current state of the histogram.
+     */
+    public Snapshot snapshot() {
+        long[] snapshot = new long[buckets];
+        long count = 0;
+        for (int i = 0; i < buckets; i++)
+            count += snapshot[i] = counts.get(i);
+        return new Snapshot(snapshot, count, sum.sum(), max.get());
+    }
+
+    /**
+     * The state of a histogram at some point (exposed through JMX as composite data).
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        public long getP50Nanos() {
+            return percentile(0.5);
+        }
+
+        public long getP90Nanos() {
+            return percentile(0.9);
+        }
+
+        public long getP99Nanos() {
+            return percentile(0.99);
+        }
+
+        public long getP999Nanos() {
+            return percentile(0.999);
+        }
+
+        /**
+         * @param fraction - the fraction of the durations (between 0 and 1).
+         * @return - the upper bound of the bucket holding that percentile (at most the maximal duration).
+         */
+        public long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0)
+                    return i == 0 ? 0 : Math.min(i >= 63 ? Long.MAX_VALUE : (1L << i) - 1, max);
+            }
+            return max;
+        }
+    }
+}
@@ -22,6 +22,7 @@ public class Main {
 
     private static boolean xButtonPressed = false;
     private static Logger logger;
+    private static String logFilename;
 
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
@@ -43,6 +44,7 @@ public class Main {
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
+        if (config.asyncLogging) useAsyncLogging(logger);
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
@@ -55,9 +57,13 @@ public class Main {
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        GameMetrics metrics = new GameMetrics(config);
+        metrics.register(logger);
+        PressTracer tracer = new PressTracer(logger, config);
+        ui = new UserInterfaceDecorator(logger, util, ui, metrics, tracer);
 
-        Env env = new Env(logger, config, ui, util);
+        GameJournal journal = new GameJournal(logger, config);
+        Env env = new Env(logger, config, ui, util, journal, metrics, tracer);
 
         // create the game entities
         Table table = new Table(env);
@@ -79,6 +85,9 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            journal.close();
+            metrics.unregister();
+            tracer.logSummary();
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
@@ -91,7 +100,8 @@ public class Main {
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            logFilename = "./logs/" + format.format(Calendar.getInstance().getTime()) + ".log";
+            handler = new FileHandler(logFilename);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -104,12 +114,31 @@ public class Main {
         return logger;
     }
 
+    /**
+     * Replaces the file handler of the logger by a handler that appends to the same file on a background thread.
+     */
+    private static void useAsyncLogging(Logger logger) {
+        for (Handler handler : logger.getHandlers()) {
+            if (!(handler instanceof FileHandler)) continue;
+            try {
+                AsyncLogHandler asyncHandler = new AsyncLogHandler(logFilename);
+                asyncHandler.setFormatter(handler.getFormatter());
+                asyncHandler.setLevel(handler.getLevel());
+                logger.removeHandler(handler);
+                handler.close();
+                logger.addHandler(asyncHandler);
+            } catch (IOException e) {
+                logger.severe("cannot open log file for asynchronous logging: " + e.getMessage());
+            }
+        }
+    }
+
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(), lr.getMessage()
                 );
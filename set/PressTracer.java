@@ -0,0 +1,204 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Traces key presses through the input pipeline: every press gets an id and a nanosecond timestamp at each stage it
+ * reaches (pressed, taken off the player's queue, token placed or removed on the table, claim submitted, verdict
+ * received, token displayed by the user interface). When a trace is complete, the latency of each stage (from the
+ * stage it follows) is added to a histogram of that stage, and if the whole trace took longer than
+ * config.slowPressTraceNanos it is logged. If config.tracePresses is off nothing is traced.
+ */
+public class PressTracer {
+
+    /**
+     * The stages of a key press, in pipeline order.
+     */
+    public enum Stage {
+        PRESSED, DEQUEUED, TOKEN, CLAIMED, VERDICT, DISPLAYED
+    }
+
+    /**
+     * The stage each stage's latency is measured from (DISPLAYED is measured from TOKEN, since the user interface
+     * displays the token concurrently with the claim).
+     */
+    private static final Stage[] previous = {null, Stage.PRESSED, Stage.DEQUEUED, Stage.TOKEN, Stage.CLAIMED,
+            Stage.TOKEN};
+
+    private final boolean enabled;
+    private final long slowNanos;
+    private final Logger logger;
+    private final AtomicLong nextId;
+
+    // the latency of each stage, and of whole traces
+    private final LatencyHistogram[] stages;
+    private final LatencyHistogram total;
+
+    // the trace of the press being handled by each thread (so the user interface calls it makes can carry it)
+    private final ThreadLocal<Trace> current;
+
+    /**
+     * Creates a tracer that traces nothing.
+     */
+    public PressTracer() {
+        this(null, false, 0);
+    }
+
+    /**
+     * @param logger - the logger, for the slow traces.
+     * @param config - the game configuration.
+     */
+    public PressTracer(Logger logger, Config config) {
+        this(logger, config.tracePresses, config.slowPressTraceNanos);
+    }
+
+    private PressTracer(Logger logger, boolean enabled, long slowNanos) {
+        this.logger = logger;
+        this.enabled = enabled;
+        this.slowNanos = slowNanos;
+        this.nextId = new AtomicLong();
+        this.stages = new LatencyHistogram[Stage.values().length];
+        for (int i = 0; i < stages.length; i++)
+            stages[i] = new LatencyHistogram();
+        this.total = new LatencyHistogram();
+        this.current = new ThreadLocal<>();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the trace of a key press.
+     *
+     * @return - the trace (stamped as pressed), or null if nothing is traced.
+     */
+    public Trace begin(int player, int slot) {
+        if (!enabled) return null;
+        Trace trace = new Trace(nextId.incrementAndGet(), player, slot);
+        trace.stamps[Stage.PRESSED.ordinal()] = System.nanoTime();
+        return trace;
+    }
+
+    /**
+     * Stamps a trace with the current time (does nothing if the trace is null).
+     */
+    public void stamp(Trace trace, Stage stage) {
+        if (trace != null) trace.stamps[stage.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Sets the trace of the press being handled by the calling thread (or null when it is done with it).
+     */
+    public void setCurrent(Trace trace) {
+        if (enabled) current.set(trace);
+    }
+
+    /**
+     * @return - the trace of the press being handled by the calling thread, or null if none.
+     */
+    public Trace current() {
+        return enabled ? current.get() : null;
+    }
+
+    /**
+     * Adds a part to a trace that completes on another thread (e.g. displaying the token), so the trace is only
+     * complete once that part ends too.
+     */
+    public void fork(Trace trace) {
+        if (trace != null) trace.parts.incrementAndGet();
+    }
+
+    /**
+     * Ends a part of a trace, and if it was the last part, records its latencies (does nothing if the trace is null).
+     */
+    public void end(Trace trace) {
+        if (trace == null || trace.parts.decrementAndGet() > 0) return;
+        long[] stamps = trace.stamps;
+        long last = 0;
+        for (Stage stage : Stage.values()) {
+            long stamp = stamps[stage.ordinal()];
+            if (stamp == 0) continue;
+            last = Math.max(last, stamp);
+            Stage from = previous[stage.ordinal()];
+            if (from != null && stamps[from.ordinal()] != 0)
+                stages[stage.ordinal()].record(stamp - stamps[from.ordinal()]);
+        }
+        long duration = last - stamps[Stage.PRESSED.ordinal()];
+        total.record(duration);
+        if (slowNanos > 0 && duration > slowNanos)
+            AsyncLogHandler.log(logger, Level.WARNING, () -> "slow key press " + trace);
+    }
+
+    /**
+     * @param stage - a stage of the pipeline.
+     * @return - the latencies of the stage so far.
+     */
+    public LatencyHistogram.Snapshot stage(Stage stage) {
+        return stages[stage.ordinal()].snapshot();
+    }
+
+    /**
+     * @return - the latencies of whole traces so far.
+     */
+    public LatencyHistogram.Snapshot total() {
+        return total.snapshot();
+    }
+
+    /**
+     * Logs the latency distribution of each stage.
+     */
+    public void logSummary() {
+        if (!enabled) return;
+        StringBuilder summary = new StringBuilder("key press latencies (count, p50, p99, max in us):");
+        for (Stage stage : Stage.values())
+            if (previous[stage.ordinal()] != null)
+                appendSummary(summary, stage.name().toLowerCase(), stage(stage));
+        appendSummary(summary, "total", total());
+        logger.info(summary.toString());
+    }
+
+    private static void appendSummary(StringBuilder summary, String name, LatencyHistogram.Snapshot snapshot) {
+        summary.append(String.format("%n  %-9s %8d %10.1f %10.1f %10.1f", name, snapshot.getCount(),
+                snapshot.getP50Nanos() / 1e3, snapshot.getP99Nanos() / 1e3, snapshot.getMaxNanos() / 1e3));
+    }
+
+    /**
+     * The trace of a single key press.
+     */
+    public static class Trace {
+
+        private final long id;
+        private final int player;
+        private final int slot;
+
+        // the time each stage was reached (System.nanoTime), 0 if it was not
+        private final long[] stamps;
+
+        // the parts of the trace that did not end yet (the player's handling of the press, and any forks)
+        private final AtomicInteger parts;
+
+        private Trace(long id, int player, int slot) {
+            this.id = id;
+            this.player = player;
+            this.slot = slot;
+            this.stamps = new long[Stage.values().length];
+            this.parts = new AtomicInteger(1);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder().append('#').append(id).append(" player ").append(player + 1)
+                    .append(" slot ").append(slot).append(':');
+            long pressed = stamps[Stage.PRESSED.ordinal()];
+            for (Stage stage : Stage.values())
+                if (stage != Stage.PRESSED && stamps[stage.ordinal()] != 0)
+                    sb.append(' ').append(stage.name().toLowerCase()).append(" +")
+                            .append((stamps[stage.ordinal()] - pressed) / 1000).append("us");
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs many complete games without a user interface, all the players being computer players, and reports the
+ * throughput of the game engine. The games run concurrently on a pool of worker threads (each game runs its dealer on
+ * a worker, and its players on their own threads as usual). The table delay, the freeze times and the turn timeout of
+ * the configuration are multiplied by a scale factor (0 by default, i.e. no delays), the turn timeout being kept at
+ * least MIN_TURN_TIMEOUT_SECONDS so every round can be played. Unless the configuration sets them, the computer
+ * players use the solver AI (see SolverAiStrategy) with no reaction time, so the games end quickly.
+ * Usage: Simulation [games] [parallelism] [delay scale]
+ */
+public class Simulation {
+
+    /**
+     * The minimal turn timeout of simulated games (after scaling).
+     */
+    public static final double MIN_TURN_TIMEOUT_SECONDS = 1;
+
+    private final Config config;
+    private final Logger logger;
+    private final Util util;
+    private final UserInterface ui;
+
+    /**
+     * @param logger - the logger (should be silent, as the games run concurrently).
+     * @param config - the configuration of the simulated games.
+     */
+    public Simulation(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        this.util = new UtilImpl(config);
+        this.ui = new UserInterfaceDecorator(logger, util, null);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        double delayScale = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+        Logger logger = Logger.getLogger("SetGameSimulationLogger");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, simulationProperties(logger,
+                Config.loadProperties("config.properties", logger), delayScale));
+
+        System.out.printf("simulating %d games of %d computer players on %d threads (delay scale %s)%n", games,
+                config.players, parallelism, delayScale);
+        Result result = new Simulation(logger, config).run(games, parallelism);
+        System.out.printf("%d games in %.3f s: %.2f games/s, %.1f sets/s%n", result.games, result.seconds(),
+                result.games / result.seconds(), result.sets / result.seconds());
+        System.out.printf("claims: %d, mean claim latency %.1f us, penalties per game %.2f%n", result.claims,
+                result.claims == 0 ? 0.0 : result.claimLatencyNanos / 1e3 / result.claims,
+                (double) result.penalties / result.games);
+    }
+
+    /**
+     * Adapts the game configuration to a simulation: computer players only (solver AI with no reaction time, unless
+     * configured otherwise), no logging, no journal and no pause at the end of the game, and the delays scaled.
+     *
+     * @param logger     - the logger.
+     * @param properties - the game configuration properties.
+     * @param delayScale - the factor to multiply the table delay, the freeze times and the turn timeout by.
+     * @return - the simulation configuration properties.
+     */
+    public static Properties simulationProperties(Logger logger, Properties properties, double delayScale) {
+        Properties simulation = new Properties();
+        simulation.putAll(properties);
+        Config config = new Config(logger, properties);
+        simulation.setProperty("HumanPlayers", "0");
+        simulation.setProperty("ComputerPlayers", Integer.toString(Math.max(config.players, 1)));
+        simulation.setProperty("LogLevel", "OFF");
+        simulation.setProperty("JournalFile", "");
+        simulation.setProperty("Hints", "False");
+        simulation.setProperty("EndGamePauseSeconds", "0");
+        simulation.setProperty("TableDelaySeconds", Double.toString(config.tableDelayMillis * delayScale / 1000.0));
+        simulation.setProperty("PointFreezeSeconds", Double.toString(config.pointFreezeMillis * delayScale / 1000.0));
+        simulation.setProperty("PenaltyFreezeSeconds", Double.toString(config.penaltyFreezeMillis * delayScale / 1000.0));
+        double turnTimeout = Math.max(config.turnTimeoutMillis * delayScale / 1000.0, MIN_TURN_TIMEOUT_SECONDS);
+        double turnTimeoutWarning = Math.min(config.turnTimeoutWarningMillis * delayScale / 1000.0, turnTimeout);
+        simulation.setProperty("TurnTimeoutSeconds", Double.toString(turnTimeout));
+        simulation.setProperty("TurnTimeoutWarningSeconds", Double.toString(turnTimeoutWarning));
+        if (!properties.containsKey("AiStrategy"))
+            simulation.setProperty("AiStrategy", "solver");
+        if (!properties.containsKey("AiReactionSeconds"))
+            simulation.setProperty("AiReactionSeconds", "0");
+        return simulation;
+    }
+
+    /**
+     * Runs games concurrently and waits for all of them to finish.
+     *
+     * @param games       - the number of games to run.
+     * @param parallelism - the number of games to run at the same time.
+     * @return - the aggregated statistics of the games.
+     */
+    public Result run(int games, int parallelism) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        List<Future<Dealer>> results = new ArrayList<>(games);
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++)
+            results.add(pool.submit(this::runGame));
+        Result result = new Result();
+        try {
+            for (Future<Dealer> future : results) {
+                Dealer dealer = future.get();
+                result.games++;
+                result.sets += dealer.setsCollected();
+                result.penalties += dealer.penalties();
+                result.claims += dealer.claimsChecked();
+                result.claimLatencyNanos += dealer.claimLatencyNanos();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Runs a complete game on the calling thread.
+     *
+     * @return - the dealer of the game, for its statistics.
+     */
+    private Dealer runGame() {
+        Env env = new Env(logger, config, ui, util);
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        dealer.run();
+        return dealer;
+    }
+
+    /**
+     * The aggregated statistics of the simulated games.
+     */
+    public static class Result {
+        public long games;
+        public long sets;
+        public long penalties;
+        public long claims;
+        public long claimLatencyNanos;
+        public long nanos;
+
+        public double seconds() {
+            return nanos / 1e9;
+        }
+    }
+}
@@ -18,6 +18,27 @@ public interface UserInterface {
      */
     void removeCard(int slot);
 
+    /**
+     * Draw the card images of several cards at once.
+     * @param cards - the card ids.
+     * @param slots - the slot of each card.
+     */
+    default void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < slots.length; i++)
+            placeCard(cards[i], slots[i]);
+    }
+
+    /**
+     * Remove the cards and all the player names text from several slots at once.
+     * @param slots - the slots.
+     */
+    default void removeCards(int[] slots) {
+        for (int slot : slots) {
+            removeTokens(slot);
+            removeCard(slot);
+        }
+    }
+
     /**
      * Draw a player name text in the specified slot.
      * @param player - the card id.
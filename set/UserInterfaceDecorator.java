@@ -1,104 +1,414 @@
 package bguspl.set;
 
+import java.awt.EventQueue;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+/**
+ * Logs all the calls to the user interface, and dispatches them to the decorated user interface asynchronously:
+ * game threads only add events to a bounded queue, and the events are drained in batches on the event dispatch
+ * thread. Events whose effect is overridden by a later event in the same batch (e.g. successive countdown updates)
+ * are dropped.
+ */
 public class UserInterfaceDecorator implements UserInterface {
 
+    /**
+     * The maximal number of pending events, and the maximal number of events drained at once.
+     */
+    private static final int queueCapacity = 4096;
+    private static final int batchSize = 256;
+
     private final Logger logger;
     private final Util util;
     private final UserInterface ui;
+    private final GameMetrics metrics;
+    private final PressTracer tracer;
+
+    /**
+     * The events not yet dispatched to the decorated user interface.
+     */
+    private final BlockingQueue<Event> events;
+
+    /**
+     * True iff a drain of the events is scheduled on the event dispatch thread.
+     */
+    private final AtomicBoolean drainScheduled;
+
+    /**
+     * Reusable batch of events (only used by the event dispatch thread).
+     */
+    private final List<Event> batch;
 
     public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
+        this(logger, util, ui, new GameMetrics(), new PressTracer());
+    }
+
+    /**
+     * @param metrics - the game metrics, for the time of the calls to the decorated user interface.
+     * @param tracer  - the key press tracer, for the time the tokens of traced presses are displayed.
+     */
+    public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui, GameMetrics metrics,
+                                  PressTracer tracer) {
         this.ui = ui;
+        this.metrics = metrics;
+        this.tracer = tracer;
         this.logger = logger;
         this.util = util;
+        this.events = new ArrayBlockingQueue<>(queueCapacity);
+        this.drainScheduled = new AtomicBoolean(false);
+        this.batch = new ArrayList<>(batchSize);
 
         if (ui == null) System.out.println("running without a user interface. Check logs.");
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        log(() -> "placing card " + card + " in slot " + slot);
         util.spin();
-        if (ui != null) ui.placeCard(card, slot);
+        dispatch(new Event(EventType.PLACE_CARD, card, slot, 0));
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        log(() -> "removing card from slot " + slot);
+        util.spin();
+        dispatch(new Event(EventType.REMOVE_CARD, 0, slot, 0));
+    }
+
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        log(() -> "placing cards " + Arrays.toString(cards) + " in slots " + Arrays.toString(slots));
         util.spin();
-        if (ui != null) ui.removeCard(slot);
+        Event[] batch = new Event[slots.length];
+        for (int i = 0; i < slots.length; i++)
+            batch[i] = new Event(EventType.PLACE_CARD, cards[i], slots[i], 0);
+        dispatch(batch);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        log(() -> "removing cards from slots " + Arrays.toString(slots));
+        util.spin();
+        Event[] batch = new Event[2 * slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            batch[2 * i] = new Event(EventType.REMOVE_TOKENS, 0, slots[i], 0);
+            batch[2 * i + 1] = new Event(EventType.REMOVE_CARD, 0, slots[i], 0);
+        }
+        dispatch(batch);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        log(() -> "player " + (player + 1) + " placing token on slot " + slot);
         util.spin();
-        if (ui != null) ui.placeToken(player, slot);
+        dispatch(traced(new Event(EventType.PLACE_TOKEN, player, slot, 0)));
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
+        log(() -> "removing all tokens");
         util.spin();
-        if (ui != null) ui.removeTokens();
+        dispatch(new Event(EventType.REMOVE_ALL_TOKENS, 0, 0, 0));
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        log(() -> "removing tokens from slot " + slot);
         util.spin();
-        if (ui != null) ui.removeTokens(slot);
+        dispatch(new Event(EventType.REMOVE_TOKENS, 0, slot, 0));
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        log(() -> "removing player " + (player + 1) + " token from slot " + slot);
         util.spin();
-        if (ui != null) ui.removeToken(player, slot);
+        dispatch(traced(new Event(EventType.REMOVE_TOKEN, player, slot, 0)));
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
         if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
-        if (ui != null) ui.setCountdown(millies, warn);
+            log(() -> "updating countdown to " + millies);
+        dispatch(new Event(warn ? EventType.WARN_COUNTDOWN : EventType.COUNTDOWN, 0, 0, millies));
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        log(() -> "updating elapsed time to " + millies);
         util.spin();
-        if (ui != null) ui.setElapsed(millies);
+        dispatch(new Event(EventType.ELAPSED, 0, 0, millies));
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        log(() -> "setting player " + (player + 1) + " freeze to " + millies);
         util.spin();
-        if (ui != null) ui.setFreeze(player, millies);
+        dispatch(new Event(EventType.FREEZE, player, 0, millies));
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        log(() -> "setting player " + (player + 1) + " score to " + score);
         util.spin();
-        if (ui != null) ui.setScore(player, score);
+        dispatch(new Event(EventType.SCORE, player, 0, score));
     }
 
     @Override
     public void announceWinner(int[] players) {
         List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
-        if (ui != null) ui.announceWinner(players);
+        log(() -> "announcing winner(s): " + String.join(", ", winners));
+        Event event = new Event(EventType.ANNOUNCE_WINNER, 0, 0, 0);
+        event.players = players.clone();
+        dispatch(event);
     }
 
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
-        if (ui != null) ui.dispose();
+        log(() -> "disposing of user interface elements");
+        dispatch(new Event(EventType.DISPOSE, 0, 0, 0));
+    }
+
+    /**
+     * Logs a message, building its text lazily (off the calling thread when logging asynchronously).
+     */
+    private void log(Supplier<String> message) {
+        AsyncLogHandler.log(logger, Level.SEVERE, message);
+    }
+
+    /**
+     * Attaches the trace of the key press the calling thread is handling (if any) to an event, so the trace is only
+     * complete once the event is displayed.
+     */
+    private Event traced(Event event) {
+        PressTracer.Trace trace = tracer.current();
+        if (trace != null && ui != null) {
+            tracer.fork(trace);
+            event.trace = trace;
+        }
+        return event;
+    }
+
+    /**
+     * Adds an event to the queue, and schedules a drain on the event dispatch thread if none is scheduled.
+     * Only blocks if the queue is full (i.e. the event dispatch thread is far behind).
+     *
+     * @param event - the event to dispatch.
+     */
+    private void dispatch(Event event) {
+        if (ui == null) return;
+        if (!events.offer(event)) {
+            scheduleDrain();
+            try {
+                events.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tracer.end(event.trace);
+                return;
+            }
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Adds a batch of events to the queue, and schedules a single drain for all of them.
+     *
+     * @param batch - the events to dispatch, in order.
+     */
+    private void dispatch(Event[] batch) {
+        if (ui == null) return;
+        for (Event event : batch) {
+            if (!events.offer(event)) {
+                scheduleDrain();
+                try {
+                    events.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true))
+            EventQueue.invokeLater(this::drain);
+    }
+
+    /**
+     * Dispatches a batch of pending events to the decorated user interface (runs on the event dispatch thread).
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        batch.clear();
+        events.drainTo(batch, batchSize);
+
+        // walk the batch backwards, dropping every event whose effect a later event overrides
+        Set<Long> overridden = new HashSet<>();
+        boolean[] dropped = new boolean[batch.size()];
+        for (int i = batch.size() - 1; i >= 0; --i) {
+            Event event = batch.get(i);
+            if (event.isOverriddenBy(overridden)) dropped[i] = true;
+            else event.addOverrides(overridden);
+        }
+
+        for (int i = 0; i < batch.size(); ++i) {
+            Event event = batch.get(i);
+            if (!dropped[i]) {
+                long start = metrics.startTimer();
+                event.dispatchTo(ui);
+                metrics.uiCall(start);
+                tracer.stamp(event.trace, PressTracer.Stage.DISPLAYED);
+            }
+            tracer.end(event.trace);
+        }
+        batch.clear();
+
+        if (!events.isEmpty()) scheduleDrain();
+    }
+
+    private enum EventType {
+        PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_TOKEN, REMOVE_TOKENS, REMOVE_ALL_TOKENS,
+        COUNTDOWN, WARN_COUNTDOWN, ELAPSED, FREEZE, SCORE, ANNOUNCE_WINNER, DISPOSE
+    }
+
+    /**
+     * A call to the user interface. A later event overrides an earlier one if it leaves the same part of the
+     * display in a state that does not depend on the earlier one, which is tracked by keys of the parts of the
+     * display each event sets.
+     */
+    private static class Event {
+
+        // the kinds of the parts of the display (the top byte of a key)
+        private static final long TIMER = 1, CARD = 2, TOKEN = 3, SLOT_TOKENS = 4, ALL_TOKENS = 5, FREEZE = 6,
+                SCORE = 7;
+
+        private final EventType type;
+        private final int player; // (or the card, for PLACE_CARD)
+        private final int slot;
+        private final long value;
+        private int[] players;
+        private PressTracer.Trace trace; // the trace of the key press that caused the event (if traced)
+
+        private Event(EventType type, int player, int slot, long value) {
+            this.type = type;
+            this.player = player;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        private static long key(long kind, int player, int slot) {
+            return kind << 56 | (long) player << 28 | slot;
+        }
+
+        private boolean isOverriddenBy(Set<Long> overridden) {
+            switch (type) {
+                case PLACE_CARD:
+                case REMOVE_CARD:
+                    return overridden.contains(key(CARD, 0, slot));
+                case PLACE_TOKEN:
+                case REMOVE_TOKEN:
+                    return overridden.contains(key(TOKEN, player, slot)) || overridden.contains(key(SLOT_TOKENS, 0, slot))
+                            || overridden.contains(key(ALL_TOKENS, 0, 0));
+                case REMOVE_TOKENS:
+                    return overridden.contains(key(SLOT_TOKENS, 0, slot)) || overridden.contains(key(ALL_TOKENS, 0, 0));
+                case REMOVE_ALL_TOKENS:
+                    return overridden.contains(key(ALL_TOKENS, 0, 0));
+                case COUNTDOWN:
+                case WARN_COUNTDOWN:
+                case ELAPSED:
+                    return overridden.contains(key(TIMER, 0, 0));
+                case FREEZE:
+                    return overridden.contains(key(FREEZE, player, 0));
+                case SCORE:
+                    return overridden.contains(key(SCORE, player, 0));
+                default:
+                    return false;
+            }
+        }
+
+        private void addOverrides(Set<Long> overridden) {
+            switch (type) {
+                case PLACE_CARD:
+                case REMOVE_CARD:
+                    overridden.add(key(CARD, 0, slot));
+                    break;
+                case PLACE_TOKEN:
+                case REMOVE_TOKEN:
+                    overridden.add(key(TOKEN, player, slot));
+                    break;
+                case REMOVE_TOKENS:
+                    overridden.add(key(SLOT_TOKENS, 0, slot));
+                    break;
+                case REMOVE_ALL_TOKENS:
+                    overridden.add(key(ALL_TOKENS, 0, 0));
+                    break;
+                case COUNTDOWN:
+                case WARN_COUNTDOWN:
+                case ELAPSED:
+                    overridden.add(key(TIMER, 0, 0));
+                    break;
+                case FREEZE:
+                    overridden.add(key(FREEZE, player, 0));
+                    break;
+                case SCORE:
+                    overridden.add(key(SCORE, player, 0));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void dispatchTo(UserInterface ui) {
+            switch (type) {
+                case PLACE_CARD:
+                    ui.placeCard(player, slot);
+                    break;
+                case REMOVE_CARD:
+                    ui.removeCard(slot);
+                    break;
+                case PLACE_TOKEN:
+                    ui.placeToken(player, slot);
+                    break;
+                case REMOVE_TOKEN:
+                    ui.removeToken(player, slot);
+                    break;
+                case REMOVE_TOKENS:
+                    ui.removeTokens(slot);
+                    break;
+                case REMOVE_ALL_TOKENS:
+                    ui.removeTokens();
+                    break;
+                case COUNTDOWN:
+                case WARN_COUNTDOWN:
+                    ui.setCountdown(value, type == EventType.WARN_COUNTDOWN);
+                    break;
+                case ELAPSED:
+                    ui.setElapsed(value);
+                    break;
+                case FREEZE:
+                    ui.setFreeze(player, value);
+                    break;
+                case SCORE:
+                    ui.setScore(player, (int) value);
+                    break;
+                case ANNOUNCE_WINNER:
+                    ui.announceWinner(players);
+                    break;
+                case DISPOSE:
+                    ui.dispose();
+                    break;
+            }
+        }
     }
 }
@@ -108,6 +108,9 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
+        // the rows of the grid, including the rows of the overflow slots
+        private final int gridRows = config.rows + (config.maxOverflowSlots + config.columns - 1) / config.columns;
+
         private Image loadImageResource(String filename) {
             URL imageResource = getClass().getClassLoader().getResource(filename);
             if (imageResource == null)
@@ -117,7 +120,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         private GamePanel() {
 
-            setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
+            setPreferredSize(new Dimension(config.columns * config.cellWidth, gridRows * config.cellHeight));
 
             // init deck and load all pictures from png files
             assert config.featureSize < 10; // otherwise there will be naming conflicts
@@ -128,10 +131,10 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
                 deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
             emptyCard = loadImageResource("cards/empty_card.png");
 
-            grid = new Image[config.rows][config.columns];
-            tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
-            for (int row = 0; row < config.rows; row++) {
+            grid = new Image[gridRows][config.columns];
+            tokenText = new JLabel[gridRows][config.columns];
+            playerTokens = new boolean[config.players][gridRows][config.columns];
+            for (int row = 0; row < gridRows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
                     grid[row][column] = emptyCard;
@@ -172,7 +175,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
+            for (int i = 0; i < config.maxTableSize; i++)
                 removeTokens(i);
         }
 
@@ -206,7 +209,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         @Override
         public void paintComponent(Graphics g) {
             // draw card images
-            for (int row = 0; row < config.rows; row++)
+            for (int row = 0; row < gridRows; row++)
                 for (int column = 0; column < config.columns; column++)
                     g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
         }
@@ -15,6 +15,14 @@ public interface Util {
      */
     int[] cardToFeatures(int card);
 
+    /**
+     * Writes the features of a card into the given array (see cardToFeatures method) without allocating.
+     *
+     * @param card     - the card id.
+     * @param features - an array of at least config.featureCount entries to be filled with the card's features.
+     */
+    void cardToFeatures(int card, int[] features);
+
     /**
      * Converts an array of card ids to an array of features (see cardToFeatures method).
      *
@@ -24,15 +32,25 @@ public interface Util {
     int[][] cardsToFeatures(int[] cards);
 
     /**
-     * Checks if an array of cards forms a legal set.
+     * Checks if an array of cards forms a legal set. Does not allocate.
      *
      * @param cards - the array of cards.
      * @return - true iff the array forms a legal set.
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Finds the only card that completes the given cards to a legal set.
+     *
+     * @param cards - an array of config.featureSize - 1 card ids.
+     * @return - the id of the completing card, or -1 if there is none (or config.featureSize < 3, in which case the
+     *           missing card is not unique).
+     */
+    int completeSet(int[] cards);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
+     * The sets are sorted, and are returned in lexicographic order.
      *
      * @param deck  - a collection of cards (may not include null objects).
      * @param count - the maximum number of sets to find.
@@ -1,10 +1,13 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.IntStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The implementation of the UserInterface interface.
@@ -13,17 +16,46 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of every card in the deck, precomputed once (the features of card c are stored at indices
+     * c * config.featureCount to (c + 1) * config.featureCount - 1).
+     */
+    private final int[] features;
+
+    /**
+     * The weight of each feature in a card id (i.e. featureSize ^ (featureCount - 1 - i) for feature i).
+     */
+    private final int[] featureWeights;
+
+    /**
+     * The sum of all possible values of a feature (i.e. 0 + 1 + ... + featureSize - 1).
+     */
+    private final int featureValuesSum;
+
     public UtilImpl(Config config) {
         this.config = config;
+        features = new int[config.deckSize * config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card)
+            decodeFeatures(card, features, card * config.featureCount);
+
+        featureWeights = new int[config.featureCount];
+        for (int i = config.featureCount - 1, weight = 1; i >= 0; --i, weight *= config.featureSize)
+            featureWeights[i] = weight;
+        featureValuesSum = config.featureSize * (config.featureSize - 1) / 2;
     }
 
-    private void cardToFeatures(int card, int[] features) {
+    private void decodeFeatures(int card, int[] features, int offset) {
         for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
+            features[offset + i] = card % config.featureSize;
             card /= config.featureSize;
         }
     }
 
+    @Override
+    public void cardToFeatures(int card, int[] features) {
+        System.arraycopy(this.features, card * config.featureCount, features, 0, config.featureCount);
+    }
+
     @Override
     public int[] cardToFeatures(int card) {
         int[] features = new int[config.featureCount];
@@ -34,27 +66,29 @@ public class UtilImpl implements Util {
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        for (int i = 0; i < cards.length; ++i)
+            cardToFeatures(cards[i], features[i]);
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
+        int featureCount = config.featureCount;
+        for (int i = 0; i < featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            int first = features[cards[0] * featureCount + i];
+            for (int j = 1; j < cards.length; ++j)
+                if (features[cards[j] * featureCount + i] != first) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (features[cards[j - 1] * featureCount + i] == features[cards[k] * featureCount + i]) {
                         butDifferent = false;
                         break;
                     }
@@ -64,8 +98,169 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    @Override
+    public int completeSet(int[] cards) {
+        return completeSet(cards, cards.length);
+    }
+
+    /**
+     * Finds the card completing the first length cards of the array to a legal set, feature by feature: a feature
+     * that is the same in all the given cards must be the same in the missing card, and a feature that is different
+     * in all of them must take the single value that is still missing.
+     *
+     * @param cards  - an array of card ids.
+     * @param length - the number of cards to complete (config.featureSize - 1).
+     * @return - the id of the completing card, or -1 if there is none.
+     */
+    private int completeSet(int[] cards, int length) {
+        if (config.featureSize < 3 || length != config.featureSize - 1) return -1;
+        int featureCount = config.featureCount;
+        int card = 0;
+        for (int i = 0; i < featureCount; ++i) {
+            int first = features[cards[0] * featureCount + i];
+            int sum = first;
+            boolean sameSame = true;
+            for (int j = 1; j < length; ++j) {
+                int value = features[cards[j] * featureCount + i];
+                sum += value;
+                if (value != first) sameSame = false;
+            }
+
+            if (sameSame) {
+                card += first * featureWeights[i];
+                continue;
+            }
+
+            // not sameSame, so it has to be butDifferent in all cards
+            for (int j = 1; j < length; ++j)
+                for (int k = j; k < length; ++k)
+                    if (features[cards[j - 1] * featureCount + i] == features[cards[k] * featureCount + i])
+                        return -1;
+            card += (featureValuesSum - sum) * featureWeights[i];
+        }
+        return card;
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (config.featureSize < 3) return findSetsByCombinations(deck, count);
+
+        int[] cards = new int[deck.size()];
+        long[] present = new long[(config.deckSize + 63) >>> 6];
+        int i = 0;
+        for (int card : deck) {
+            cards[i++] = card;
+            present[card >>> 6] |= 1L << card;
+        }
+        Arrays.sort(cards);
+
+        if (config.parallelFindSetsThreshold > 0 && cards.length >= config.parallelFindSetsThreshold)
+            return ForkJoinPool.commonPool().invoke(
+                    new FindSetsTask(cards, present, 0, cards.length, count, new AtomicInteger(Integer.MAX_VALUE)));
+
+        List<int[]> sets = new ArrayList<>();
+        findSets(cards, present, 0, cards.length, count, sets);
+        return sets;
+    }
+
+    /**
+     * Finds up to count sets whose smallest card is one of cards[from..to), in lexicographic order. Every
+     * combination of config.featureSize - 1 cards is completed to the only card that could make it a legal set, which
+     * is then looked up in the presence bitmap. A set is reported only from its featureSize - 1 smallest cards, so
+     * each set is found exactly once.
+     *
+     * @param cards   - the cards to search, sorted in ascending order.
+     * @param present - a bitmap of the cards to search (bit c is on iff card c is in cards).
+     * @param from    - the first index (inclusive) of the smallest card of a set.
+     * @param to      - the last index (exclusive) of the smallest card of a set.
+     * @param count   - the maximum number of sets to find.
+     * @param sets    - the list to add the sets found to (each set sorted in ascending order).
+     */
+    void findSets(int[] cards, long[] present, int from, int to, int count, List<int[]> sets) {
+        int[] chosen = new int[config.featureSize];
+        for (int i = from; i < to && sets.size() < count; ++i) {
+            chosen[0] = cards[i];
+            extendSet(cards, present, chosen, 1, i + 1, count, sets);
+        }
+    }
+
+    /**
+     * Finds up to count sets whose smallest card is one of cards[from..to) by splitting the range between the
+     * threads of a ForkJoinPool. The sets are joined in range order, so the result is identical to a sequential
+     * search.
+     */
+    private class FindSetsTask extends RecursiveTask<List<int[]>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] cards;
+        private final long[] present;
+        private final int from;
+        private final int to;
+        private final int count;
+
+        /**
+         * The smallest range start of a task that already found count sets. Sets found by tasks with larger range
+         * starts would come after those in the result, so such tasks stop searching.
+         */
+        private final AtomicInteger cutoff;
+
+        private FindSetsTask(int[] cards, long[] present, int from, int to, int count, AtomicInteger cutoff) {
+            this.cards = cards;
+            this.present = present;
+            this.from = from;
+            this.to = to;
+            this.count = count;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            if (from > cutoff.get()) return new ArrayList<>();
+
+            int grain = Math.max(1, cards.length / (ForkJoinPool.getCommonPoolParallelism() * 8));
+            if (to - from <= grain) {
+                List<int[]> sets = new ArrayList<>();
+                for (int i = from; i < to && sets.size() < count && from <= cutoff.get(); ++i)
+                    findSets(cards, present, i, i + 1, count, sets);
+                if (sets.size() >= count) cutoff.accumulateAndGet(from, Math::min);
+                return sets;
+            }
+
+            int middle = (from + to) >>> 1;
+            FindSetsTask left = new FindSetsTask(cards, present, from, middle, count, cutoff);
+            FindSetsTask right = new FindSetsTask(cards, present, middle, to, count, cutoff);
+            right.fork();
+            List<int[]> sets = left.compute();
+            List<int[]> rightSets = right.join();
+            for (int i = 0; i < rightSets.size() && sets.size() < count; ++i)
+                sets.add(rightSets.get(i));
+            return sets;
+        }
+    }
+
+    private void extendSet(int[] cards, long[] present, int[] chosen, int depth, int next, int count, List<int[]> sets) {
+        if (depth == chosen.length - 1) {
+            int last = completeSet(chosen, depth);
+            if (last > chosen[depth - 1] && (present[last >>> 6] & (1L << last)) != 0) {
+                chosen[depth] = last;
+                sets.add(chosen.clone());
+            }
+            return;
+        }
+        for (int i = next; i < cards.length && sets.size() < count; ++i) {
+            chosen[depth] = cards[i];
+            extendSet(cards, present, chosen, depth + 1, i + 1, count, sets);
+        }
+    }
+
+    /**
+     * Finds sets by testing every combination of config.featureSize cards. Used only when the features of a
+     * partial set do not determine its missing card (i.e. config.featureSize < 3).
+     */
+    private List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
+        deck = new ArrayList<>(deck);
+        deck.sort(null);
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
@@ -0,0 +1,35 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * Chooses the key presses of a computer player. The AI thread of the player asks for a press every few milliseconds,
+ * and queues it if there is a card in the pressed slot and the player is not frozen.
+ */
+public interface AiStrategy {
+
+    /**
+     * @return - the slot to press next, or -1 to not press anything this time.
+     */
+    int nextPress();
+
+    /**
+     * Creates the strategy chosen by config.aiStrategy ("random" or "solver").
+     *
+     * @param env    - the environment object.
+     * @param table  - the table object.
+     * @param player - the computer player.
+     * @return - the strategy (the random one if the configured name is unknown).
+     */
+    static AiStrategy create(Env env, Table table, Player player) {
+        switch (env.config.aiStrategy) {
+            case "solver":
+                return new SolverAiStrategy(env, table, player);
+            case "random":
+                return new RandomAiStrategy(env);
+            default:
+                env.logger.severe("warning: unknown AI strategy " + env.config.aiStrategy + ", using random.");
+                return new RandomAiStrategy(env);
+        }
+    }
+}
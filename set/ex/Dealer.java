@@ -1,14 +1,25 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameThreads;
 import bguspl.set.ex.Player.panishOrScore;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * This class manages the dealer's threads and data
@@ -28,18 +39,29 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * Chooses the cards dealt from the deck into empty slots.
+     */
+    private final DealingStrategy dealing;
+
+    /**
+     * The sets that can still be collected from the cards in the deck and on the table.
+     */
+    private final DeckTracker deckTracker;
 
     /**
      * True iff game should be terminated.
      */
     private volatile boolean terminate;
 
-    // players claimed sets
-    // public volatile BlockingQueue<Player> claimedPlayer;
-    public volatile Queue<Player> claimedSetPlayers;
+    /**
+     * The claims submitted by the players and not yet checked by the dealer (many producers, one consumer).
+     */
+    private final Queue<Claim> claims;
 
     // The Dealers thread
     public Thread dealerThread;
@@ -50,8 +72,34 @@ public class Dealer implements Runnable {
     // Threads order list
     public Stack<Player> threadList;
 
-    // Avoiding Magic Numbers- timeout for sleepUntilAwokenOrTimeout
+    // Runs delayed game tasks (e.g. updating the freeze time display of frozen players)
+    final ScheduledExecutorService scheduler;
+
+    // Released by each player thread once it has started (so the players start one after the other)
+    final Semaphore playersStarted;
+
+    // Avoiding Magic Numbers- countdown display update intervals, in warning mode and otherwise
     private final int napTime = 100;
+    private final int displayTime = 1000;
+
+    // The next time the countdown display has to be updated
+    private long nextTimerUpdate;
+
+    // Reusable buffer for the cards of a claimed set (so validating a claim does not allocate)
+    private final int[] claimCards;
+
+    // The layout of the next round (the cards in play in the order to deal them), prepared in the common pool while
+    // the current round runs; null if none is being prepared
+    private CompletableFuture<int[]> nextLayout;
+
+    // The number of times to reshuffle a layout whose table cards do not contain a set
+    private static final int LAYOUT_ATTEMPTS = 100;
+
+    // Game statistics (only updated by the dealer thread, read once the game is over)
+    private long setsCollected;
+    private long penalties;
+    private long claimsChecked;
+    private long claimLatencyNanos; // total time from submitting a claim until its verdict
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
@@ -60,11 +108,20 @@ public class Dealer implements Runnable {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = new Deck(env.config.deckSize);
+        deckTracker = new DeckTracker(env);
+        dealing = DealingStrategy.create(env, table, deck);
 
         // new
-        claimedSetPlayers = new LinkedList<Player>();
+        claims = new ConcurrentLinkedQueue<Claim>();
         threadList = new Stack<Player>();
+        playersStarted = new Semaphore(0);
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        claimCards = new int[env.config.featureSize];
     }
 
     /**
@@ -73,23 +130,28 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-        synchronized (threadList) {
-            for (Player player : players) {
-                Thread t = new Thread(player);
-                t.start();
-                try {
-                    threadList.wait();
-                } catch (InterruptedException e) {
-                }
-            }
+        dealerThread = Thread.currentThread();
+        if (env.config.virtualThreads && !GameThreads.virtualThreadsSupported())
+            env.logger.severe("warning: virtual threads are not supported by this JVM, using platform threads.");
+        for (Player player : players) {
+            GameThreads.newThread(env.config, player, "player-" + player.id).start();
+            playersStarted.acquireUninterruptibly();
         }
+        boolean first = true;
         while (!shouldFinish()) {
-            shuffleDeck();
-            placeCardsOnTable();
+            if (first) {
+                shuffleDeck();
+                placeCardsOnTable();
+                first = false;
+            } else
+                dealNextLayout();
+            prepareNextLayout();
             timerLoop();
             updateTimerDisplay(false);
-            removeAllCardsFromTable();
         }
+        if (nextLayout != null)
+            nextLayout.cancel(true);
+        removeAllCardsFromTable();
         terminate();
         announceWinners();
 
@@ -101,13 +163,15 @@ public class Dealer implements Runnable {
      * not time out.
      */
     private void timerLoop() {
-        env.ui.setCountdown(env.config.turnTimeoutMillis, false);
-        timeUpdated = System.currentTimeMillis();
+        updateTimerDisplay(true);
         while (!terminate && System.currentTimeMillis() - timeUpdated < env.config.turnTimeoutMillis) {
             sleepUntilWokenOrTimeout();
-            updateTimerDisplay(false);
-            removeSetCardsFromTable();
-            placeCardsOnTable();
+            long start = env.metrics.startTimer();
+            if (removeSetCardsFromTable())
+                placeCardsOnTable();
+            if (System.currentTimeMillis() >= nextTimerUpdate)
+                updateTimerDisplay(false);
+            env.metrics.dealerIteration(start);
         }
     }
 
@@ -125,6 +189,10 @@ public class Dealer implements Runnable {
 
         }
         terminate = true;
+        if (dealerThread != null)
+            LockSupport.unpark(dealerThread); // wake the dealer if it is parked until the turn timeout
+        cancelClaims();
+        scheduler.shutdownNow();
     }
 
     /**
@@ -133,110 +201,262 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || !deckTracker.hasSets();
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
+     *
+     * @return - true iff any cards were removed from the table.
      */
-    private void removeSetCardsFromTable() {
-        while (!claimedSetPlayers.isEmpty()) {
-            Player nextPlayer = claimedSetPlayers.peek();
-            synchronized (nextPlayer.set) {
-                synchronized (table) {
-                    if (nextPlayer.set.size() == env.config.featureSize) {
-                        int[] setCards = new int[env.config.featureSize];
-                        for (int i = 0; i < env.config.featureSize; i++) {
-                            Integer slot = nextPlayer.set.get(i);
-                            Integer card = table.slotToCard[slot];
-                            setCards[i] = card;
-                        }
-                        boolean isSet = env.util.testSet(setCards);
-                        if (isSet) {
-                            while (!nextPlayer.set.isEmpty()) {
-                                Integer slot = nextPlayer.set.get(0);
-                                smartRemove(slot);
-                            }
-                            env.ui.setCountdown(env.config.turnTimeoutMillis, false);
-                            timeUpdated = System.currentTimeMillis();
-                            nextPlayer.penaltyOrScore = panishOrScore.SCORE;
-                        } else {
-                            while (!nextPlayer.set.isEmpty()) {
-                                Integer slot = nextPlayer.set.get(0);
-                                nextPlayer.set.remove((Integer) slot);
-                                table.removeToken(nextPlayer.id, slot);
-                            }
-                            nextPlayer.penaltyOrScore = panishOrScore.PANISH;
-                        }
+    private boolean removeSetCardsFromTable() {
+        boolean removed = false;
+        Claim claim;
+        while ((claim = claims.poll()) != null) {
+            env.metrics.claimDequeued();
+            Player nextPlayer = claim.player;
+            panishOrScore verdict = panishOrScore.NON;
+            nextPlayer.setLock.lock();
+            try {
+                BitSet set = nextPlayer.set;
+                if (set.cardinality() == env.config.featureSize) {
+                    int i = 0;
+                    for (int slot = set.nextSetBit(0); slot >= 0; slot = set.nextSetBit(slot + 1))
+                        claimCards[i++] = table.slotToCard[slot];
+                    if (env.journal.isEnabled())
+                        env.journal.claim(nextPlayer.id, set.stream().toArray());
+                    boolean isSet = env.util.testSet(claimCards);
+                    if (isSet) {
+                        for (int card : claimCards)
+                            deckTracker.remove(card);
+                        smartRemove(set.stream().toArray());
+                        updateTimerDisplay(true);
+                        removed = true;
+                        verdict = panishOrScore.SCORE;
+                    } else {
+                        for (int slot = set.nextSetBit(0); slot >= 0; slot = set.nextSetBit(slot + 1))
+                            table.removeToken(nextPlayer.id, slot);
+                        verdict = panishOrScore.PANISH;
                     }
+                    set.clear();
                 }
+            } finally {
+                nextPlayer.setLock.unlock();
             }
-            synchronized (claimedSetPlayers) {
-                claimedSetPlayers.remove();
-                claimedSetPlayers.notifyAll();
-            }
+            env.journal.verdict(nextPlayer.id, verdict.ordinal());
+            claim.verdict.complete(verdict);
+            if (verdict == panishOrScore.SCORE) setsCollected++;
+            else if (verdict == panishOrScore.PANISH) penalties++;
+            claimsChecked++;
+            claimLatencyNanos += System.nanoTime() - claim.submitted;
+            if (verdict != panishOrScore.NON)
+                env.metrics.claimChecked(nextPlayer.id, verdict == panishOrScore.SCORE, claim.submitted);
         }
+        return removed;
     }
 
     /**
-     * Check if any cards can be removed from the deck and placed on the table.
+     * Submits a player's claim for a set, to be checked by the dealer.
+     *
+     * @param player - the player claiming a set (with the tokens in player.set).
+     * @return - a future that the dealer completes with its verdict for the claim.
+     */
+    public CompletableFuture<panishOrScore> submitClaim(Player player) {
+        Claim claim = new Claim(player);
+        env.metrics.claimSubmitted(player.id);
+        claims.add(claim);
+        LockSupport.unpark(dealerThread);
+        if (terminate) cancelClaims();
+        return claim.verdict;
+    }
+
+    /**
+     * Completes all the pending claims without a verdict (e.g. when the game is over).
+     */
+    private void cancelClaims() {
+        Claim claim;
+        while ((claim = claims.poll()) != null) {
+            env.metrics.claimDequeued();
+            claim.verdict.complete(panishOrScore.NON);
+        }
+    }
+
+    /**
+     * Check if any cards can be removed from the deck and placed on the table. The cards in overflow slots are moved
+     * into the empty grid slots first (so the table shrinks back as sets are collected), and then the table is
+     * expanded if it has no set.
      */
     private void placeCardsOnTable() {
-        synchronized (table) {
-            for (int i = 0; i < env.config.tableSize; i++) {
-                if (table.slotToCard[i] == null && deck.size() > 0) {
-                    table.placeCard(deck.remove(0), i);
-                }
+        int[] slots = new int[env.config.tableSize];
+        int empty = 0;
+        for (int i = 0; i < env.config.tableSize; i++)
+            if (table.slotToCard[i] == null)
+                slots[empty++] = i;
+        int[] overflow = new int[empty];
+        int moved = 0;
+        for (int i = env.config.tableSize; i < env.config.maxTableSize && moved < empty; i++)
+            if (table.slotToCard[i] != null)
+                overflow[moved++] = i;
+        int dealt = Math.min(empty - moved, deck.size());
+        int count = moved + dealt;
+        if (count > 0) {
+            int[] cards = new int[count];
+            for (int i = 0; i < moved; i++)
+                cards[i] = table.slotToCard[overflow[i]];
+            System.arraycopy(dealing.deal(dealt), 0, cards, moved, dealt);
+            if (moved > 0) {
+                overflow = Arrays.copyOf(overflow, moved);
+                clearTokens(overflow, table.removeCards(overflow));
             }
+            table.placeCards(cards, Arrays.copyOf(slots, count));
         }
+        if ((expandTable() || count > 0) && env.config.hints)
+            table.hints();
+    }
 
+    /**
+     * Deals cards into the free overflow slots, one at a time, while there is no set on the table.
+     *
+     * @return - true iff any cards were dealt.
+     */
+    private boolean expandTable() {
+        boolean expanded = false;
+        for (int slot = env.config.tableSize; slot < env.config.maxTableSize; slot++) {
+            if (deck.isEmpty() || table.findSet() != null) break;
+            if (table.slotToCard[slot] == null) {
+                table.placeCard(dealing.deal(1)[0], slot);
+                expanded = true;
+            }
+        }
+        return expanded;
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some
-     * purpose.
+     * Starts preparing the layout of the next round in the background, from the cards in play now.
      */
-    private void sleepUntilWokenOrTimeout() {
-        synchronized (claimedSetPlayers) {
+    private void prepareNextLayout() {
+        int[] cards = cardsInPlay();
+        nextLayout = CompletableFuture.supplyAsync(() -> shuffleLayout(cards));
+    }
+
+    /**
+     * Replaces the cards on the table with the ones of the layout prepared for this round (or with a new layout, if
+     * it is not ready or no longer contains a set), in a single table update, and puts the rest of the cards in the
+     * deck.
+     */
+    private void dealNextLayout() {
+        int[] layout = null;
+        if (nextLayout != null) {
             try {
-                claimedSetPlayers.wait(napTime);
-            } catch (InterruptedException e) {
+                layout = nextLayout.getNow(null);
+            } catch (CompletionException | CancellationException ignored) {
             }
+            nextLayout.cancel(true);
+            nextLayout = null;
+        }
+        int inPlay = deck.size() + table.countCards();
+        if (layout != null) // the cards collected since the layout was prepared are no longer in play
+            layout = Arrays.stream(layout).filter(card -> deck.contains(card) || table.cardToSlot[card] != null)
+                    .toArray();
+        if (layout == null || layout.length != inPlay || !hasSet(layout, Math.min(env.config.tableSize, inPlay)))
+            layout = shuffleLayout(cardsInPlay());
+
+        int tableCards = Math.min(env.config.tableSize, layout.length);
+        int[] slots = new int[env.config.maxTableSize];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = i;
+        if (env.journal.isEnabled())
+            env.journal.shuffle(layout);
+        clearTokens(slots, table.replaceCards(slots, Arrays.copyOf(layout, tableCards)));
+        deck.load(layout, tableCards);
+        expandTable();
+        if (env.config.hints)
+            table.hints();
+    }
+
+    /**
+     * @return - the cards on the table followed by the cards in the deck.
+     */
+    private int[] cardsInPlay() {
+        int[] cards = new int[table.countCards() + deck.size()];
+        int count = 0;
+        for (int i = 0; i < env.config.maxTableSize; i++)
+            if (table.slotToCard[i] != null)
+                cards[count++] = table.slotToCard[i];
+        System.arraycopy(deck.toArray(), 0, cards, count, deck.size());
+        return cards;
+    }
+
+    /**
+     * Shuffles cards until the ones to be placed on the table contain a set (or the attempts run out). Thread safe.
+     *
+     * @param cards - the cards in play.
+     * @return - the shuffled cards.
+     */
+    private int[] shuffleLayout(int[] cards) {
+        Deck layout = new Deck(env.config.deckSize);
+        layout.load(cards, 0);
+        int tableCards = Math.min(env.config.tableSize, cards.length);
+        for (int attempt = 0; attempt < LAYOUT_ATTEMPTS; attempt++) {
+            layout.shuffle();
+            cards = layout.toArray();
+            if (hasSet(cards, tableCards)) break;
         }
+        return cards;
     }
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * @return - true iff the first count cards contain a set.
+     */
+    private boolean hasSet(int[] cards, int count) {
+        List<Integer> list = Arrays.stream(cards, 0, count).boxed().collect(Collectors.toList());
+        return !env.util.findSets(list, 1).isEmpty();
+    }
+
+    /**
+     * Sleep until the next deadline (the next countdown display update or the turn timeout), or until the thread is
+     * awakened by a claim.
+     */
+    private void sleepUntilWokenOrTimeout() {
+        long deadline = Math.min(nextTimerUpdate, timeUpdated + env.config.turnTimeoutMillis);
+        long sleepTime = deadline - System.currentTimeMillis();
+        if (claims.isEmpty() && sleepTime > 0)
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleepTime));
+    }
+
+    /**
+     * Reset and/or update the countdown and the countdown display, and schedule the next display update: the next
+     * whole second of the countdown (or the start of the warning period), or the next napTime in warning mode.
      */
     private void updateTimerDisplay(boolean reset) {
-        long timeElapsed = System.currentTimeMillis() - timeUpdated;
-        long timer = env.config.turnTimeoutMillis - timeElapsed;
+        long now = System.currentTimeMillis();
+        if (reset)
+            timeUpdated = now;
+        long timer = env.config.turnTimeoutMillis - (now - timeUpdated);
         if (timer < env.config.turnTimeoutWarningMillis) {
-            if (timer < 0) {
-                env.ui.setCountdown(0, true);
-            } else {
-                env.ui.setCountdown(timer, true);
-            }
-
+            env.ui.setCountdown(Math.max(timer, 0), true);
+            nextTimerUpdate = now + napTime;
         } else {
-            env.ui.setCountdown(timer, reset);
+            env.ui.setCountdown(timer, false);
+            long untilNextSecond = timer % displayTime == 0 ? displayTime : timer % displayTime;
+            long untilWarning = timer - env.config.turnTimeoutWarningMillis + 1;
+            nextTimerUpdate = now + Math.min(untilNextSecond, untilWarning);
         }
-
     }
 
     /**
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        synchronized (table) {
-            for (int i = 0; i < env.config.tableSize; i++) {
-                if (table.slotToCard[i] != null) {
-                    int card = table.slotToCard[i];
-                    deck.add(card);
-                    smartRemove(i);
-                }
+        int[] slots = new int[env.config.maxTableSize];
+        int count = 0;
+        for (int i = 0; i < env.config.maxTableSize; i++) {
+            if (table.slotToCard[i] != null) {
+                deck.add(table.slotToCard[i]);
+                slots[count++] = i;
             }
         }
+        smartRemove(Arrays.copyOf(slots, count));
     }
 
     /**
@@ -264,29 +484,105 @@ public class Dealer implements Runnable {
         env.ui.announceWinner(winnerArray);
     }
 
+    /**
+     * Removes the card in a slot from the table, and the slot from the sets of the players who had a token on it.
+     *
+     * @param slot - the slot from which to remove the card.
+     */
     public void smartRemove(int slot) {
-        synchronized (table) {
-            for (int i = 0; i < players.length; i++) {
-                if (table.slotsToken[slot][i]) {
-                    synchronized (players[i].set) {
-                        players[i].set.remove((Integer) slot);
-                    }
-                }
+        BitSet holders = table.removeCard(slot);
+        for (int i = holders.nextSetBit(0); i >= 0; i = holders.nextSetBit(i + 1)) {
+            players[i].setLock.lock();
+            try {
+                players[i].set.clear(slot);
+            } finally {
+                players[i].setLock.unlock();
             }
+        }
+    }
+
+    /**
+     * Removes the cards in several slots from the table at once, and the slots from the sets of the players who had
+     * tokens on them.
+     *
+     * @param slots - the slots from which to remove the cards.
+     */
+    public void smartRemove(int[] slots) {
+        clearTokens(slots, table.removeCards(slots));
+    }
 
-            table.removeCard(slot);
+    /**
+     * Removes slots from the sets of the players who had tokens on them.
+     *
+     * @param slots   - the slots.
+     * @param holders - for each slot, the players who had a token on it.
+     */
+    private void clearTokens(int[] slots, BitSet[] holders) {
+        BitSet affected = new BitSet(players.length);
+        for (BitSet slotHolders : holders)
+            affected.or(slotHolders);
+        for (int i = affected.nextSetBit(0); i >= 0; i = affected.nextSetBit(i + 1)) {
+            players[i].setLock.lock();
+            try {
+                for (int j = 0; j < slots.length; j++)
+                    if (holders[j].get(i))
+                        players[i].set.clear(slots[j]);
+            } finally {
+                players[i].setLock.unlock();
+            }
         }
     }
 
     public void shuffleDeck() {
-        List<Integer> newDeck = new LinkedList<Integer>();
-        while (!deck.isEmpty()) {
-            int size = deck.size();
-            newDeck.add(deck.remove((int) (Math.random() * size)));
-        }
-        while (!newDeck.isEmpty()) {
-            deck.add(newDeck.remove(0));
-        }
+        deck.shuffle();
+        if (env.journal.isEnabled())
+            env.journal.shuffle(deck.toArray());
+    }
+
+    /**
+     * @return - the number of sets collected by the players so far.
+     */
+    public long setsCollected() {
+        return setsCollected;
+    }
+
+    /**
+     * @return - the number of penalties given to the players so far.
+     */
+    public long penalties() {
+        return penalties;
+    }
+
+    /**
+     * @return - the number of claims checked by the dealer so far.
+     */
+    public long claimsChecked() {
+        return claimsChecked;
+    }
+
+    /**
+     * @return - the total time, in nanoseconds, between the submission of the claims checked so far and their verdicts.
+     */
+    public long claimLatencyNanos() {
+        return claimLatencyNanos;
+    }
 
+    /**
+     * A player's claim for a set, along with the future through which the player gets the dealer's verdict.
+     */
+    private static class Claim {
+
+        private final Player player;
+
+        private final CompletableFuture<panishOrScore> verdict;
+
+        // the time the claim was submitted (System.nanoTime)
+        private final long submitted;
+
+        private Claim(Player player) {
+            this.player = player;
+            this.verdict = new CompletableFuture<>();
+            this.submitted = System.nanoTime();
+        }
     }
 }
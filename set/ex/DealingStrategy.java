@@ -0,0 +1,39 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * Chooses the cards the dealer deals from the deck into the empty slots of the table. Only called by the dealer
+ * thread (the only thread that changes the deck and the cards on the table).
+ */
+public interface DealingStrategy {
+
+    /**
+     * Removes the cards to deal from the deck.
+     *
+     * @param count - the number of cards to deal (at most the number of cards in the deck).
+     * @return - the cards, in the order to place them in the empty slots.
+     */
+    int[] deal(int count);
+
+    /**
+     * Creates the strategy chosen by config.dealingStrategy ("random" or "set").
+     *
+     * @param env   - the environment object.
+     * @param table - the table object.
+     * @param deck  - the dealer's deck.
+     * @return - the strategy (the random one if the configured name is unknown).
+     */
+    static DealingStrategy create(Env env, Table table, Deck deck) {
+        switch (env.config.dealingStrategy) {
+            case "set":
+                return new SetDealingStrategy(env, table, deck);
+            case "random":
+                return new RandomDealingStrategy(deck);
+            default:
+                env.logger.severe("warning: unknown dealing strategy " + env.config.dealingStrategy
+                        + ", using random.");
+                return new RandomDealingStrategy(deck);
+        }
+    }
+}
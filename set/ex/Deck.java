@@ -0,0 +1,175 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The dealer's deck: the cards are kept in an int array used as a circular buffer, from the next card to deal
+ * (at the cursor) to the last card returned to the deck. Dealing, returning, looking up and removing a card are O(1),
+ * and shuffling is an in-place Fisher-Yates shuffle.
+ *
+ * @inv 0 <= size <= cards.length
+ * @inv position[c] != -1 iff card c is in the deck, and then cards[position[c]] == c
+ */
+public class Deck {
+
+    /**
+     * The value returned by deal when the deck is empty.
+     */
+    public static final int EMPTY = -1;
+
+    private final int[] cards;
+
+    /**
+     * The index in cards of each card in the deck (-1 for the cards that are not in it).
+     */
+    private final int[] position;
+
+    /**
+     * The index in cards of the next card to deal.
+     */
+    private int cursor;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    private final SplittableRandom random;
+
+    /**
+     * Creates a deck holding all the cards (0 to deckSize - 1, in order).
+     *
+     * @param deckSize - the number of cards in the game.
+     */
+    public Deck(int deckSize) {
+        this(deckSize, new SplittableRandom());
+    }
+
+    /**
+     * @param deckSize - the number of cards in the game.
+     * @param random   - the random generator to shuffle with.
+     */
+    public Deck(int deckSize, SplittableRandom random) {
+        cards = new int[deckSize];
+        position = new int[deckSize];
+        for (int card = 0; card < deckSize; card++)
+            cards[card] = position[card] = card;
+        size = deckSize;
+        this.random = random;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return position[card] != -1;
+    }
+
+    /**
+     * Removes the next card from the deck.
+     *
+     * @return - the card, or EMPTY if the deck is empty.
+     */
+    public int deal() {
+        if (size == 0) return EMPTY;
+        int card = cards[cursor];
+        position[card] = -1;
+        cursor = index(1);
+        size--;
+        return card;
+    }
+
+    /**
+     * Returns a card to the bottom of the deck.
+     *
+     * @param card - a card that is not in the deck.
+     */
+    public void add(int card) {
+        if (position[card] != -1) throw new IllegalArgumentException("card " + card + " is already in the deck");
+        int index = index(size);
+        cards[index] = card;
+        position[card] = index;
+        size++;
+    }
+
+    /**
+     * Removes a card from anywhere in the deck (the card at the bottom of the deck takes its place).
+     *
+     * @param card - the card to remove.
+     * @return - true iff the card was in the deck.
+     */
+    public boolean remove(int card) {
+        int index = position[card];
+        if (index == -1) return false;
+        int last = index(size - 1);
+        cards[index] = cards[last];
+        position[cards[index]] = index;
+        position[card] = -1;
+        size--;
+        return true;
+    }
+
+    /**
+     * Shuffles the cards in the deck (Fisher-Yates).
+     */
+    public void shuffle() {
+        for (int i = size - 1; i > 0; i--) {
+            int a = index(i), b = index(random.nextInt(i + 1));
+            int card = cards[a];
+            cards[a] = cards[b];
+            cards[b] = card;
+            position[cards[a]] = a;
+            position[cards[b]] = b;
+        }
+    }
+
+    /**
+     * Replaces the cards in the deck.
+     *
+     * @param order - the cards to put in the deck, in the order they will be dealt (from index from on).
+     * @param from  - the index in order of the first card to put in the deck.
+     */
+    public void load(int[] order, int from) {
+        Arrays.fill(position, -1);
+        cursor = 0;
+        size = order.length - from;
+        for (int i = 0; i < size; i++) {
+            if (position[order[from + i]] != -1)
+                throw new IllegalArgumentException("card " + order[from + i] + " appears twice");
+            cards[i] = order[from + i];
+            position[cards[i]] = i;
+        }
+    }
+
+    /**
+     * @return - the cards in the deck, in the order they will be dealt.
+     */
+    public int[] toArray() {
+        int[] deck = new int[size];
+        for (int i = 0; i < size; i++)
+            deck[i] = cards[index(i)];
+        return deck;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * @return - the index in cards of the card at the given distance from the cursor.
+     */
+    private int index(int offset) {
+        int index = cursor + offset;
+        return index >= cards.length ? index - cards.length : index;
+    }
+}
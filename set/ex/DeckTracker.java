@@ -0,0 +1,154 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps track of the legal sets that can still be collected, i.e. the sets among the cards that are still
+ * in play (in the deck or on the table). Dealing a card does not change the cards in play, so only cards that leave
+ * the game need to be reported.
+ *
+ * @inv sets == (sum of setsWithCard[c] for every card c) / env.config.featureSize
+ */
+public class DeckTracker {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The cards that are still in play (only the first size entries are used).
+     */
+    private final int[] cards;
+
+    /**
+     * The number of cards that are still in play.
+     */
+    private int size;
+
+    /**
+     * Mapping between a card and its index in cards (-1 if it is no longer in play).
+     */
+    private final int[] position;
+
+    /**
+     * The number of sets each card can still be a part of.
+     */
+    private final int[] setsWithCard;
+
+    /**
+     * The total number of sets that can still be collected.
+     */
+    private long sets;
+
+    /**
+     * Reusable buffers for a partial set to complete and for a set found.
+     */
+    private final int[] partial;
+    private final int[] set;
+
+    /**
+     * Creates a tracker in which all the cards of the deck are in play.
+     *
+     * @param env - the game environment objects.
+     */
+    public DeckTracker(Env env) {
+        this.env = env;
+        cards = new int[env.config.deckSize];
+        position = new int[env.config.deckSize];
+        setsWithCard = new int[env.config.deckSize];
+        partial = new int[Math.max(env.config.featureSize - 1, 0)];
+        set = new int[env.config.featureSize];
+        Arrays.fill(position, -1);
+        for (int card = 0; card < env.config.deckSize; ++card) {
+            forEachSetWith(card, 1);
+            position[card] = size;
+            cards[size++] = card;
+        }
+    }
+
+    /**
+     * Takes a card out of play (e.g. after it was collected as part of a set), along with all the sets it is a
+     * part of.
+     *
+     * @param card - the card id.
+     */
+    public void remove(int card) {
+        int index = position[card];
+        if (index == -1) return;
+        int moved = cards[--size];
+        cards[index] = moved;
+        position[moved] = index;
+        position[card] = -1;
+        forEachSetWith(card, -1);
+    }
+
+    /**
+     * @return - true iff there is at least one legal set among the cards in play.
+     */
+    public boolean hasSets() {
+        return sets > 0;
+    }
+
+    /**
+     * @return - the number of legal sets among the cards in play.
+     */
+    public long countSets() {
+        return sets;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the number of legal sets among the cards in play that the card is a part of.
+     */
+    public int setsWithCard(int card) {
+        return setsWithCard[card];
+    }
+
+    /**
+     * Updates the counters of every set a card (which is not in cards) forms with the cards in play.
+     *
+     * @param card  - the card id.
+     * @param delta - 1 if the card joins the game, -1 if it leaves it.
+     */
+    private void forEachSetWith(int card, int delta) {
+        if (env.config.featureSize == 2) {
+            set[0] = card;
+            for (int i = 0; i < size; ++i) {
+                set[1] = cards[i];
+                if (env.util.testSet(set)) count(delta);
+            }
+        } else if (env.config.featureSize >= 3) {
+            partial[0] = card;
+            completeSets(1, 0, delta);
+        }
+    }
+
+    /**
+     * Completes partial[0..depth) with every combination of cards from cards[from..size) to a legal set. A set
+     * is counted only when its completing card comes after the combination in cards, so each set is counted once.
+     */
+    private void completeSets(int depth, int from, int delta) {
+        if (depth == partial.length) {
+            int last = env.util.completeSet(partial);
+            if (last >= 0 && position[last] >= from) {
+                System.arraycopy(partial, 0, set, 0, partial.length);
+                set[partial.length] = last;
+                count(delta);
+            }
+            return;
+        }
+        for (int i = from; i < size; ++i) {
+            partial[depth] = cards[i];
+            completeSets(depth + 1, i + 1, delta);
+        }
+    }
+
+    private void count(int delta) {
+        for (int card : set)
+            setsWithCard[card] += delta;
+        sets += delta;
+    }
+}
@@ -0,0 +1,148 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed-capacity queue of non-negative ints, for a single producer thread and a single consumer thread.
+ * Neither side takes a lock or allocates: the producer only writes tail, the consumer only writes head, and a side
+ * that has to block parks until the other side unparks it. Once the buffer is closed, a blocked producer gives up
+ * instead of waiting for a consumer that may never come.
+ *
+ * @inv 0 <= tail - head <= capacity
+ */
+public class IntRingBuffer {
+
+    /**
+     * The value returned by poll when the buffer is empty.
+     */
+    public static final int EMPTY = -1;
+
+    private final int[] buffer;
+
+    /**
+     * The sequence number of the next value to poll (only written by the consumer).
+     */
+    private final AtomicLong head;
+
+    /**
+     * The sequence number of the next value to offer (only written by the producer).
+     */
+    private final AtomicLong tail;
+
+    /**
+     * The threads blocked on an empty buffer (consumer) or a full buffer (producer), if any.
+     */
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+
+    /**
+     * True iff the buffer was closed (then put gives up instead of waiting for room).
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param capacity - the maximal number of values in the buffer.
+     */
+    public IntRingBuffer(int capacity) {
+        buffer = new int[Math.max(capacity, 1)];
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Adds a value to the buffer if it is not full (called by the producer only).
+     *
+     * @param value - a non-negative value.
+     * @return - true iff the value was added.
+     */
+    public boolean offer(int value) {
+        long t = tail.get();
+        if (t - head.get() >= buffer.length) return false;
+        buffer[(int) (t % buffer.length)] = value;
+        tail.set(t + 1);
+        Thread consumer = waitingConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Adds a value to the buffer, waiting for room if it is full (called by the producer only).
+     *
+     * @param value - a non-negative value.
+     * @return - true iff the value was added, false if the buffer was closed while it was full.
+     * @throws InterruptedException - if the producer was interrupted while waiting.
+     */
+    public boolean put(int value) throws InterruptedException {
+        while (!offer(value)) {
+            if (closed) return false;
+            waitingProducer = Thread.currentThread();
+            if (isFull() && !closed) LockSupport.park(this);
+            waitingProducer = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the oldest value from the buffer if it is not empty (called by the consumer only).
+     *
+     * @return - the oldest value, or EMPTY if the buffer is empty.
+     */
+    public int poll() {
+        long h = head.get();
+        if (h == tail.get()) return EMPTY;
+        int value = buffer[(int) (h % buffer.length)];
+        head.set(h + 1);
+        Thread producer = waitingProducer;
+        if (producer != null) LockSupport.unpark(producer);
+        return value;
+    }
+
+    /**
+     * Removes the oldest value from the buffer, waiting for one if it is empty (called by the consumer only).
+     *
+     * @return - the oldest value.
+     * @throws InterruptedException - if the consumer was interrupted while waiting.
+     */
+    public int take() throws InterruptedException {
+        int value;
+        while ((value = poll()) == EMPTY) {
+            waitingConsumer = Thread.currentThread();
+            if (isEmpty()) LockSupport.park(this);
+            waitingConsumer = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        return value;
+    }
+
+    /**
+     * Closes the buffer, waking up a producer blocked in put so that it gives up.
+     */
+    public void close() {
+        closed = true;
+        Thread producer = waitingProducer;
+        if (producer != null) LockSupport.unpark(producer);
+    }
+
+    /**
+     * @return - true iff the buffer is full.
+     */
+    public boolean isFull() {
+        return tail.get() - head.get() >= buffer.length;
+    }
+
+    /**
+     * @return - true iff the buffer is empty.
+     */
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * @return - the number of values in the buffer.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -1,10 +1,17 @@
 package bguspl.set.ex;
 
+import java.util.BitSet;
 import java.util.Queue;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import bguspl.set.Env;
+import bguspl.set.GameThreads;
+import bguspl.set.PressTracer;
+import bguspl.set.PressTracer.Stage;
 
 /**
  * This class manages the players' threads and data
@@ -55,29 +62,35 @@ public class Player implements Runnable {
      */
     private int score;
 
-    // Queue holding the incoming presses
-    private Queue<Integer> q;
+    // Queue holding the incoming presses (produced by the input or AI thread, consumed by the player thread)
+    private final IntRingBuffer q;
 
-    // list holding the players slots
-    public List<Integer> set;
+    // The traces of the presses in q, in the same order (only used if key presses are traced)
+    private final Queue<PressTracer.Trace> traces;
 
-    // int determining if player should be scored (1), penalized (2) or dismissed
-    // (0)
-    public volatile panishOrScore penaltyOrScore;
+    // The number of presses queued and not yet fully handled by the player thread (including a claim they made)
+    private final AtomicInteger unhandledPresses;
+
+    // the slots on which the player has tokens (bit i is on iff the player has a token on slot i)
+    public final BitSet set;
+
+    // the lock guarding set (a lock rather than a monitor, so virtual player threads waiting for it do not pin their
+    // carrier threads)
+    public final ReentrantLock setLock;
 
     // Pointer to the dealer object
     public Dealer dealer;
 
-    // whether the player is freezed or not
-    private boolean freezed;
+    // the time until which the player is frozen (the player is not frozen once it has passed)
+    private volatile long frozenUntil;
 
     //Avoiding magic numbers :
     // AI sleep time between two presses
     private final int aiTime = 20;
-    //while being freezed, sleep time between countdown update
-    private final int freezeUpdateTime = 100;
+    //while being freezed, time between countdown updates
+    private final int freezeUpdateTime = 1000;
     
-    //Enum class to determine dealer reaction for set
+    //Enum class to determine dealer reaction for set (scored, penalized or dismissed)
     public enum panishOrScore {
         NON,
         SCORE,
@@ -100,10 +113,12 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-        q = new LinkedList<Integer>();
-        penaltyOrScore = panishOrScore.NON;
-        set = new ArrayList<Integer>();
-        freezed = false;
+        q = new IntRingBuffer(env.config.featureSize);
+        traces = new ConcurrentLinkedQueue<>();
+        unhandledPresses = new AtomicInteger();
+        set = new BitSet(env.config.maxTableSize);
+        setLock = new ReentrantLock();
+        frozenUntil = 0;
     }
 
     /**
@@ -112,57 +127,50 @@ public class Player implements Runnable {
      */
     @Override
     public void run() {
-        synchronized(dealer.threadList) {
-            playerThread = Thread.currentThread();
-            env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-            dealer.threadList.push(this);
-            if (!human)
-                createArtificialIntelligence();
-            dealer.threadList.notifyAll();
-        }
+        playerThread = Thread.currentThread();
+        env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        if (!human)
+            createArtificialIntelligence();
+        dealer.threadList.push(this);
+        dealer.playersStarted.release();
         while (!terminate) {
-            penaltyOrScore = panishOrScore.NON;
-            synchronized (q) {
-                while (q.isEmpty()) {
-                    try {
-                        q.wait();
-                    } catch (InterruptedException ignored) {
-                        break;
-                    }
-                }
-                if (!terminate) {
-                    Integer nextSlot = q.remove();
-                    synchronized (table) {
-                        synchronized (set) {
-                            if (table.removeToken(id, nextSlot)) {
-                                set.remove((Integer) nextSlot);
-                            } else {
-                                if (set.size() < env.config.featureSize) {  
-                                    if (table.slotToCard[nextSlot] != null){
-                                        table.placeToken(id, nextSlot);
-                                        set.add(nextSlot);
-                                    }
-                                }
-                            }
-                        }
-
-                        q.notifyAll();
-                    }
+            int nextSlot;
+            try {
+                nextSlot = q.take();
+            } catch (InterruptedException ignored) {
+                continue;
+            }
+            PressTracer tracer = env.tracer;
+            PressTracer.Trace trace = tracer.isEnabled() ? traces.poll() : null;
+            tracer.stamp(trace, Stage.DEQUEUED);
+            if (isFrozen()) {
+                tracer.end(trace);
+                unhandledPresses.decrementAndGet();
+                continue;
+            }
+            boolean claim;
+            setLock.lock();
+            tracer.setCurrent(trace);
+            try {
+                if (table.removeToken(id, nextSlot)) {
+                    set.clear(nextSlot);
+                } else if (set.cardinality() < env.config.featureSize && table.placeToken(id, nextSlot)) {
+                    set.set(nextSlot);
                 }
-
+                claim = set.cardinality() == env.config.featureSize;
+            } finally {
+                tracer.setCurrent(null);
+                setLock.unlock();
             }
-            if (!terminate && set.size() == env.config.featureSize) {
-                synchronized (dealer.claimedSetPlayers) {
-                    dealer.claimedSetPlayers.add(this);
-                    dealer.claimedSetPlayers.notifyAll();
-                    while (!terminate && dealer.claimedSetPlayers.contains(this)) {
-                        try {
-                            dealer.claimedSetPlayers.wait();
-                        } catch (InterruptedException e) {
-                            break;
-                        }
-                    }
+            tracer.stamp(trace, Stage.TOKEN);
+            if (!terminate && claim) {
+                panishOrScore penaltyOrScore = panishOrScore.NON;
+                tracer.stamp(trace, Stage.CLAIMED);
+                try {
+                    penaltyOrScore = dealer.submitClaim(this).get();
+                } catch (InterruptedException | ExecutionException ignored) {
                 }
+                tracer.stamp(trace, Stage.VERDICT);
                 if (penaltyOrScore == panishOrScore.SCORE) {
                     this.point();
 
@@ -171,6 +179,8 @@ public class Player implements Runnable {
 
                 }
             }
+            tracer.end(trace);
+            unhandledPresses.decrementAndGet();
         }
         if (!human)
             try {
@@ -183,30 +193,32 @@ public class Player implements Runnable {
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of
      * this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it
-     * is not full.
+     * key presses, chosen by the configured AI strategy. If the queue of key presses is full, the thread waits until it
+     * is not full (it is the only producer of the queue, so it never contends with the player thread on a lock).
      */
 
     private void createArtificialIntelligence() {
-        // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        AiStrategy strategy = AiStrategy.create(env, table, this);
+        aiThread = GameThreads.newThread(env.config, () -> {
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
                 try {
                     Thread.sleep(aiTime);
                 } catch (InterruptedException e) {
+                    break; // only terminate interrupts the AI thread
                 }
-                synchronized (q) {
-                    while (!terminate && isFull()) {
-                        try {
-                            q.wait();
-                        } catch (InterruptedException ignored) {
-                            break;
-                        }
+                int slot = strategy.nextPress();
+                if (slot >= 0 && canPress(slot)) {
+                    PressTracer.Trace trace = env.tracer.begin(id, slot);
+                    if (trace != null) traces.add(trace);
+                    unhandledPresses.incrementAndGet();
+                    try {
+                        if (!q.put(slot))
+                            unhandledPresses.decrementAndGet();
+                    } catch (InterruptedException ignored) {
+                        unhandledPresses.decrementAndGet();
                     }
                 }
-                int randomSlot = (int) (Math.random() * env.config.tableSize);
-                keyPressed(randomSlot);
 
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
@@ -219,6 +231,7 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate = true;
+        q.close();
         playerThread.interrupt();
         if (!human)
             aiThread.interrupt();
@@ -226,19 +239,37 @@ public class Player implements Runnable {
     }
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. Presses of computer players are ignored, since their AI thread
+     * is the only producer of their queue.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        synchronized (q) {
-            if (table.slotToCard[slot] != null && !isFull() && !freezed) {
-                q.add(slot);
-                q.notifyAll();
+        if (!human)
+            return;
+        if (isFrozen())
+            env.metrics.keyPressDroppedFrozen(id);
+        else if (table.slotToCard[slot] != null) {
+            if (q.isFull()) { // only this thread adds to q, so it cannot become full after this check
+                env.metrics.keyPressDroppedQueueFull(id);
+                return;
             }
+            PressTracer.Trace trace = env.tracer.begin(id, slot);
+            if (trace != null) traces.add(trace);
+            unhandledPresses.incrementAndGet();
+            q.offer(slot);
         }
     }
 
+    /**
+     * @param slot - the slot corresponding to a key.
+     * @return - true iff pressing the key should be queued (i.e. there is a card in the slot and the player is not
+     *           frozen).
+     */
+    private boolean canPress(int slot) {
+        return table.slotToCard[slot] != null && !isFrozen();
+    }
+
     /**
      * Award a point to a player and perform other related actions.
      *
@@ -247,16 +278,7 @@ public class Player implements Runnable {
      */
     public void point() {
         env.ui.setScore(id, ++score);
-        long currTime = System.currentTimeMillis();
-        while (System.currentTimeMillis() - currTime <= env.config.pointFreezeMillis) {
-            freezed = true;
-            try {
-                Thread.sleep(freezeUpdateTime);
-            } catch (InterruptedException ignored) {
-            }
-            env.ui.setFreeze(id, env.config.pointFreezeMillis - (System.currentTimeMillis() - currTime));
-        }
-        freezed = false;
+        freeze(env.config.pointFreezeMillis);
         int ignored = table.countCards(); // this part is just for demonstration in
 
     }
@@ -265,16 +287,50 @@ public class Player implements Runnable {
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        long currTime = System.currentTimeMillis();
-        while (System.currentTimeMillis() - currTime <= env.config.penaltyFreezeMillis) {
-            freezed = true;
-            try {
-                Thread.sleep(freezeUpdateTime);
-            } catch (InterruptedException ignored) {
-            }
-            env.ui.setFreeze(id, env.config.penaltyFreezeMillis - (System.currentTimeMillis() - currTime));
+        freeze(env.config.penaltyFreezeMillis);
+    }
+
+    /**
+     * Freezes the player: key presses are ignored until the freeze time is over. No thread waits for the freeze to
+     * end; the remaining freeze time is displayed by tasks scheduled on the dealer's scheduler.
+     *
+     * @param millis - the freeze time in milliseconds.
+     */
+    private void freeze(long millis) {
+        long until = System.currentTimeMillis() + millis;
+        frozenUntil = until;
+        updateFreezeDisplay(until);
+    }
+
+    /**
+     * Displays the remaining freeze time, and schedules the next update for when the displayed seconds change.
+     *
+     * @param until - the end time of the freeze being displayed.
+     */
+    private void updateFreezeDisplay(long until) {
+        if (until != frozenUntil) return; // a newer freeze took over
+        long remaining = until - System.currentTimeMillis();
+        env.ui.setFreeze(id, Math.max(remaining, 0));
+        if (remaining <= 0) return;
+        long nextUpdate = remaining % freezeUpdateTime == 0 ? freezeUpdateTime : remaining % freezeUpdateTime;
+        try {
+            dealer.scheduler.schedule(() -> updateFreezeDisplay(until), nextUpdate, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) { // the game is over
         }
-        freezed = false;
+    }
+
+    /**
+     * @return - true iff the player is frozen.
+     */
+    public boolean isFrozen() {
+        return System.currentTimeMillis() < frozenUntil;
+    }
+
+    /**
+     * @return - true iff some presses of the player were queued and not yet fully handled.
+     */
+    public boolean hasUnhandledPresses() {
+        return unhandledPresses.get() > 0;
     }
 
     public int score() {
@@ -282,8 +338,6 @@ public class Player implements Runnable {
     }
 
     public boolean isFull() {
-        synchronized (q) {
-            return (q.size() >= env.config.featureSize);
-        }
+        return q.isFull();
     }
 }
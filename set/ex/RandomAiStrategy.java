@@ -0,0 +1,24 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Presses random slots (so almost all of its claims are not sets).
+ */
+public class RandomAiStrategy implements AiStrategy {
+
+    private final Env env;
+    private final SplittableRandom random;
+
+    public RandomAiStrategy(Env env) {
+        this.env = env;
+        this.random = new SplittableRandom();
+    }
+
+    @Override
+    public int nextPress() {
+        return random.nextInt(env.config.maxTableSize);
+    }
+}
@@ -0,0 +1,21 @@
+package bguspl.set.ex;
+
+/**
+ * Deals the cards at the top of the (shuffled) deck.
+ */
+public class RandomDealingStrategy implements DealingStrategy {
+
+    private final Deck deck;
+
+    public RandomDealingStrategy(Deck deck) {
+        this.deck = deck;
+    }
+
+    @Override
+    public int[] deal(int count) {
+        int[] cards = new int[count];
+        for (int i = 0; i < count; i++)
+            cards[i] = deck.deal();
+        return cards;
+    }
+}
@@ -0,0 +1,109 @@
+package bguspl.set.ex;
+
+import java.util.ArrayList;
+import java.util.List;
+import bguspl.set.Env;
+
+/**
+ * Deals the cards at the top of the deck, unless the table would then have no set: the random deal is evaluated first,
+ * and only if neither the table nor the table with the cards at the top of the deck has a set, it first deals the
+ * cards that complete a set with the cards on the table, using as few cards from the deck as possible (the completing
+ * card of each combination of table cards and deck cards is looked up with Util.completeSet, rather than testing
+ * every combination of the resulting table). The deck is searched from the top, so the dealt cards stay random.
+ * If no set can be completed with the cards dealt (or config.featureSize < 3, where the completing card is not
+ * unique), the cards at the top of the deck are dealt.
+ */
+public class SetDealingStrategy implements DealingStrategy {
+
+    private final Env env;
+    private final Table table;
+    private final Deck deck;
+
+    // the cards on the table and in the deck during a search, and the cards of the partial set being completed
+    private final int[] tableCards;
+    private int tableSize;
+    private int[] deckCards;
+    private final int[] partial;
+
+    // the card completing partial to a set, once one is found
+    private int completion;
+
+    public SetDealingStrategy(Env env, Table table, Deck deck) {
+        this.env = env;
+        this.table = table;
+        this.deck = deck;
+        this.tableCards = new int[env.config.maxTableSize];
+        this.partial = new int[Math.max(env.config.featureSize - 1, 0)];
+    }
+
+    @Override
+    public int[] deal(int count) {
+        int[] cards = new int[count];
+        int dealt = 0;
+        if (count > 0 && env.config.featureSize >= 3 && table.findSet() == null) {
+            tableSize = 0;
+            for (int slot = 0; slot < env.config.maxTableSize; slot++)
+                if (table.slotToCard[slot] != null)
+                    tableCards[tableSize++] = table.slotToCard[slot];
+            deckCards = deck.toArray();
+            if (!randomDealHasSet(count)) {
+                for (int fromDeck = 1; fromDeck <= Math.min(env.config.featureSize, count); fromDeck++) {
+                    int fromTable = env.config.featureSize - fromDeck;
+                    if (fromTable > tableSize) continue;
+                    if (search(0, fromTable, 0)) {
+                        for (int i = fromTable; i < partial.length; i++)
+                            cards[dealt++] = partial[i];
+                        cards[dealt++] = completion;
+                        break;
+                    }
+                }
+                for (int i = 0; i < dealt; i++)
+                    deck.remove(cards[i]);
+            }
+        }
+        while (dealt < count)
+            cards[dealt++] = deck.deal();
+        return cards;
+    }
+
+    /**
+     * @param count - the number of cards to deal.
+     * @return - true iff the cards on the table and the count cards at the top of the deck contain a set.
+     */
+    private boolean randomDealHasSet(int count) {
+        List<Integer> cards = new ArrayList<>(tableSize + count);
+        for (int i = 0; i < tableSize; i++)
+            cards.add(tableCards[i]);
+        for (int i = 0; i < count; i++)
+            cards.add(deckCards[i]);
+        return !env.util.findSets(cards, 1).isEmpty();
+    }
+
+    /**
+     * Fills partial[depth..) with table cards (up to index fromTable) and then deck cards, from index from of the
+     * cards of their kind, until the completing card of partial is in the deck (and not already in partial).
+     *
+     * @return - true iff a set was found (partial and completion hold it).
+     */
+    private boolean search(int depth, int fromTable, int from) {
+        if (depth == partial.length) {
+            completion = env.util.completeSet(partial);
+            if (completion < 0 || !deck.contains(completion)) return false;
+            for (int i = fromTable; i < partial.length; i++)
+                if (partial[i] == completion) return false;
+            return true;
+        }
+        if (depth < fromTable) {
+            for (int i = from; i < tableSize; i++) {
+                partial[depth] = tableCards[i];
+                if (search(depth + 1, fromTable, depth + 1 == fromTable ? 0 : i + 1)) return true;
+            }
+        } else {
+            for (int i = from; i < deckCards.length; i++) {
+                partial[depth] = deckCards[i];
+                if (search(depth + 1, fromTable, i + 1)) return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class keeps track of all the legal sets among a changing collection of cards (e.g. the cards on the table).
+ * Adding or removing a card costs work proportional to the number of cards in the collection (for sets of 3), and
+ * queries take constant time.
+ *
+ * @inv position[cards[i]] == i for every 0 <= i < size, position[c] == -1 for every other card c
+ */
+public class SetIndex {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The cards in the collection (only the first size entries are used).
+     */
+    private final int[] cards;
+
+    /**
+     * The number of cards in the collection.
+     */
+    private int size;
+
+    /**
+     * Mapping between a card and its index in cards (-1 if it is not in the collection).
+     */
+    private final int[] position;
+
+    /**
+     * All the legal sets among the cards in the collection (each one sorted).
+     */
+    private final List<int[]> sets;
+
+    /**
+     * Reusable buffer for a partial set to complete.
+     */
+    private final int[] partial;
+
+    public SetIndex(Env env) {
+        this.env = env;
+        cards = new int[env.config.deckSize];
+        position = new int[env.config.deckSize];
+        Arrays.fill(position, -1);
+        sets = new ArrayList<>();
+        partial = new int[Math.max(env.config.featureSize - 1, 0)];
+    }
+
+    /**
+     * Adds a card to the collection, along with all the new sets it forms.
+     *
+     * @param card - the card id.
+     */
+    public void add(int card) {
+        if (position[card] != -1) return;
+        if (env.config.featureSize < 3) addBySetTest(card);
+        else if (partial.length > 0) {
+            partial[0] = card;
+            addCompletedSets(1, 0);
+        }
+        position[card] = size;
+        cards[size++] = card;
+    }
+
+    /**
+     * Completes partial[0..depth) with every combination of cards from cards[from..size) to a legal set. A set
+     * is added only when its completing card comes after the combination in cards, so each set is added once.
+     */
+    private void addCompletedSets(int depth, int from) {
+        if (depth == partial.length) {
+            int last = env.util.completeSet(partial);
+            int lastPosition = last < 0 ? -1 : position[last];
+            if (lastPosition >= from) {
+                int[] set = Arrays.copyOf(partial, partial.length + 1);
+                set[partial.length] = last;
+                Arrays.sort(set);
+                sets.add(set);
+            }
+            return;
+        }
+        for (int i = from; i < size; ++i) {
+            partial[depth] = cards[i];
+            addCompletedSets(depth + 1, i + 1);
+        }
+    }
+
+    /**
+     * Adds the sets a card forms with each of the cards in the collection (used when config.featureSize < 3).
+     */
+    private void addBySetTest(int card) {
+        if (env.config.featureSize != 2) return;
+        for (int i = 0; i < size; ++i) {
+            int[] set = {Math.min(card, cards[i]), Math.max(card, cards[i])};
+            if (env.util.testSet(set)) sets.add(set);
+        }
+    }
+
+    /**
+     * Removes a card from the collection, along with all the sets it is a part of.
+     *
+     * @param card - the card id.
+     */
+    public void remove(int card) {
+        int index = position[card];
+        if (index == -1) return;
+        int moved = cards[--size];
+        cards[index] = moved;
+        position[moved] = index;
+        position[card] = -1;
+        sets.removeIf(set -> contains(set, card));
+    }
+
+    private static boolean contains(int[] set, int card) {
+        for (int c : set)
+            if (c == card) return true;
+        return false;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - true iff the card is in the collection.
+     */
+    public boolean contains(int card) {
+        return position[card] != -1;
+    }
+
+    /**
+     * @return - the number of cards in the collection.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - the number of legal sets among the cards in the collection.
+     */
+    public int countSets() {
+        return sets.size();
+    }
+
+    /**
+     * @return - the cards of one of the legal sets in the collection (sorted), or null if there is none.
+     */
+    public int[] anySet() {
+        return sets.isEmpty() ? null : sets.get(0).clone();
+    }
+
+    /**
+     * @return - a copy of all the legal sets in the collection (each one sorted).
+     */
+    public List<int[]> sets() {
+        List<int[]> copy = new ArrayList<>(sets.size());
+        for (int[] set : sets)
+            copy.add(set.clone());
+        return copy;
+    }
+}
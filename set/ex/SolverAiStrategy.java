@@ -0,0 +1,80 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * Finds a set on the table and presses its slots, like a player who spots a set after a reaction delay
+ * (config.aiReactionMillis) and sometimes presses a wrong slot (with probability config.aiErrorRate per press).
+ * Tokens of the player that are not on the target set are removed first. The strategy only decides on a press once
+ * the player handled all of its previous presses, so it never toggles a token twice by mistake.
+ */
+public class SolverAiStrategy implements AiStrategy {
+
+    private final Env env;
+    private final Table table;
+    private final Player player;
+    private final SplittableRandom random;
+
+    // the cards of the set the player goes for (null if none), and the time it was spotted
+    private int[] target;
+    private long targetSince;
+
+    public SolverAiStrategy(Env env, Table table, Player player) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        this.random = new SplittableRandom();
+    }
+
+    @Override
+    public int nextPress() {
+        if (player.hasUnhandledPresses() || player.isFrozen()) return -1;
+        if (!targetOnTable()) {
+            target = table.findSet();
+            targetSince = System.currentTimeMillis();
+            if (target == null) return -1;
+        }
+        if (System.currentTimeMillis() - targetSince < env.config.aiReactionMillis) return -1;
+
+        BitSet targetSlots = new BitSet(env.config.maxTableSize);
+        for (int card : target) {
+            Integer slot = table.cardToSlot[card];
+            if (slot == null) return -1; // the target was just taken
+            targetSlots.set(slot);
+        }
+        BitSet tokens;
+        player.setLock.lock();
+        try {
+            tokens = (BitSet) player.set.clone();
+        } finally {
+            player.setLock.unlock();
+        }
+
+        // remove the tokens that are not on the target
+        BitSet extra = (BitSet) tokens.clone();
+        extra.andNot(targetSlots);
+        if (!extra.isEmpty()) return extra.nextSetBit(0);
+
+        // place a token on the next slot of the target (or, by mistake, on another slot)
+        targetSlots.andNot(tokens);
+        if (targetSlots.isEmpty()) return -1; // the claim is being checked
+        if (random.nextDouble() < env.config.aiErrorRate) {
+            int slot = random.nextInt(env.config.maxTableSize);
+            if (!tokens.get(slot)) return slot;
+        }
+        return targetSlots.nextSetBit(0);
+    }
+
+    /**
+     * @return - true iff there is a target and all of its cards are still on the table.
+     */
+    private boolean targetOnTable() {
+        if (target == null) return false;
+        for (int card : target)
+            if (table.cardToSlot[card] == null) return false;
+        return true;
+    }
+}
@@ -3,12 +3,15 @@ package bguspl.set.ex;
 import bguspl.set.Env;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the data that is visible to the player.
+ * The card and the tokens of each slot are guarded by the lock of that slot, so players touching different slots do
+ * not contend with each other (unless env.config.concurrentTable is false, in which case all slots share one lock).
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
@@ -29,9 +32,21 @@ public class Table {
      */
     protected final Integer[] cardToSlot; // slot per card (if any)
 
-    // Information for the tokens - slotsToken[i][j] == ture iff player[j] has token
-    // on slot [i]
-    protected volatile boolean[][] slotsToken;
+    /**
+     * The players who have a token on each slot (bit j of slotsToken[i] is on iff player j has a token on slot i).
+     */
+    protected final BitSet[] slotsToken;
+
+    /**
+     * All the legal sets among the cards currently on the table (kept up to date by placeCard and removeCard).
+     * Guarded by its own monitor, since cards in different slots may change concurrently.
+     */
+    private final SetIndex setIndex;
+
+    /**
+     * The lock of each slot, guarding its entries in slotToCard, cardToSlot and slotsToken.
+     */
+    private final ReentrantLock[] slotLocks;
 
     /**
      * Constructor for testing.
@@ -46,7 +61,16 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
-        this.slotsToken = new boolean[env.config.tableSize][env.config.players];
+        this.slotsToken = new BitSet[slotToCard.length];
+        Arrays.setAll(slotsToken, i -> new BitSet(env.config.players));
+        this.setIndex = new SetIndex(env);
+        this.slotLocks = new ReentrantLock[slotToCard.length];
+        ReentrantLock tableLock = new ReentrantLock();
+        for (int i = 0; i < slotLocks.length; i++)
+            slotLocks[i] = env.config.concurrentTable ? new ReentrantLock() : tableLock;
+        for (Integer card : slotToCard)
+            if (card != null)
+                setIndex.add(card);
     }
 
     /**
@@ -55,16 +79,19 @@ public class Table {
      * @param env - the game environment objects.
      */
     public Table(Env env) {
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, new Integer[env.config.maxTableSize], new Integer[env.config.deckSize]);
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the
      * table.
      */
-    public void hints() { // synchronized?
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+    public void hints() {
+        List<int[]> sets;
+        synchronized (setIndex) {
+            sets = setIndex.sets();
+        }
+        sets.forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted()
                     .collect(Collectors.toList());
@@ -75,18 +102,36 @@ public class Table {
     }
 
     /**
-     * Count the number of cards currently on the table.
+     * Count the number of legal sets among the cards currently on the table.
      *
-     * @return - the number of cards on the table.
+     * @return - the number of sets on the table.
      */
-    public synchronized int countCards() { // synchronized
+    public int countSets() {
+        synchronized (setIndex) {
+            return setIndex.countSets();
+        }
+    }
 
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+    /**
+     * Finds a legal set among the cards currently on the table.
+     *
+     * @return - the cards of a set on the table (sorted), or null if there is none.
+     */
+    public int[] findSet() {
+        synchronized (setIndex) {
+            return setIndex.anySet();
+        }
+    }
 
+    /**
+     * Count the number of cards currently on the table.
+     *
+     * @return - the number of cards on the table.
+     */
+    public int countCards() {
+        synchronized (setIndex) {
+            return setIndex.size();
+        }
     }
 
     /**
@@ -96,37 +141,204 @@ public class Table {
      * @param slot - the slot in which the card should be placed.
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
+    public void placeCard(int card, int slot) {
         try {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {
         }
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
-        env.ui.placeCard(card, slot);
+        ReentrantLock lock = slotLocks[slot];
+        lock.lock();
+        long locked = env.metrics.startTimer();
+        try {
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            synchronized (setIndex) {
+                setIndex.add(card);
+            }
+            env.journal.placeCard(card, slot);
+            env.ui.placeCard(card, slot);
+        } finally {
+            env.metrics.tableLockHeld(locked);
+            lock.unlock();
+        }
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Removes a card from a grid slot on the table, along with all the tokens placed on it.
      * 
      * @param slot - the slot from which to remove the card.
+     * @return - the players whose tokens were removed (bit i is on iff player i had a token on the slot).
+     */
+    public BitSet removeCard(int slot) {
+        try {
+            Thread.sleep(env.config.tableDelayMillis);
+        } catch (InterruptedException ignored) {
+        }
+        ReentrantLock lock = slotLocks[slot];
+        lock.lock();
+        long locked = env.metrics.startTimer();
+        try {
+            BitSet holders = (BitSet) slotsToken[slot].clone();
+            Integer card = slotToCard[slot];
+            if (card != null) {
+                cardToSlot[card] = null;
+                slotToCard[slot] = null;
+                synchronized (setIndex) {
+                    setIndex.remove(card);
+                }
+                env.journal.removeCard(card, slot);
+            }
+            slotsToken[slot].clear();
+            env.ui.removeTokens(slot);
+            env.ui.removeCard(slot);
+            return holders;
+        } finally {
+            env.metrics.tableLockHeld(locked);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Places cards on the table in grid slots, as a single change: the pacing delay is applied once, before taking
+     * any lock, and then the locks of all the slots are held (taken in ascending order of the slots) while the cards
+     * are placed, so players never see part of the change.
+     *
+     * @param cards - the card ids to place.
+     * @param slots - the slot in which to place each card (distinct slots).
+     * @post - the cards placed are on the table, in the assigned slots.
      */
-    public synchronized void removeCard(int slot) {
+    public void placeCards(int[] cards, int[] slots) {
+        if (slots.length == 0) return;
         try {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {
         }
-        Integer card = slotToCard[slot];
-        if (card == null) {
-            System.out.println("bug");
+        int[] locked = lockSlots(slots);
+        long lockedTime = env.metrics.startTimer();
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                cardToSlot[cards[i]] = slots[i];
+                slotToCard[slots[i]] = cards[i];
+            }
+            synchronized (setIndex) {
+                for (int card : cards)
+                    setIndex.add(card);
+            }
+            for (int i = 0; i < slots.length; i++)
+                env.journal.placeCard(cards[i], slots[i]);
+            env.ui.placeCards(cards, slots);
+        } finally {
+            env.metrics.tableLockHeld(lockedTime);
+            unlockSlots(locked);
         }
-        cardToSlot[card] = null;
-        slotToCard[slot] = null;
-        for (int i = 0; i < env.config.players; i++) {
-            slotsToken[slot][i] = false;
+    }
+
+    /**
+     * Removes the cards from grid slots on the table, along with all the tokens placed on them, as a single change
+     * (see placeCards).
+     *
+     * @param slots - the slots from which to remove the cards (distinct slots).
+     * @return - for each slot, the players whose tokens were removed from it.
+     */
+    public BitSet[] removeCards(int[] slots) {
+        BitSet[] holders = new BitSet[slots.length];
+        if (slots.length == 0) return holders;
+        try {
+            Thread.sleep(env.config.tableDelayMillis);
+        } catch (InterruptedException ignored) {
+        }
+        int[] locked = lockSlots(slots);
+        long lockedTime = env.metrics.startTimer();
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                int slot = slots[i];
+                holders[i] = (BitSet) slotsToken[slot].clone();
+                slotsToken[slot].clear();
+                Integer card = slotToCard[slot];
+                if (card != null) {
+                    cardToSlot[card] = null;
+                    slotToCard[slot] = null;
+                    synchronized (setIndex) {
+                        setIndex.remove(card);
+                    }
+                    env.journal.removeCard(card, slot);
+                }
+            }
+            env.ui.removeCards(slots);
+            return holders;
+        } finally {
+            env.metrics.tableLockHeld(lockedTime);
+            unlockSlots(locked);
         }
-        env.ui.removeTokens(slot);
-        env.ui.removeCard(slot);
+    }
+
+    /**
+     * Replaces the cards in grid slots, along with all the tokens placed on them, as a single change (see placeCards):
+     * players see the old cards until they see all the new ones.
+     *
+     * @param slots - the slots to clear (distinct slots).
+     * @param cards - the cards to place in the first cards.length slots (the other slots are left empty).
+     * @return - for each slot, the players whose tokens were removed from it.
+     */
+    public BitSet[] replaceCards(int[] slots, int[] cards) {
+        BitSet[] holders = new BitSet[slots.length];
+        if (slots.length == 0) return holders;
+        try {
+            Thread.sleep(env.config.tableDelayMillis);
+        } catch (InterruptedException ignored) {
+        }
+        int[] placed = Arrays.copyOf(slots, cards.length);
+        int[] locked = lockSlots(slots);
+        long lockedTime = env.metrics.startTimer();
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                int slot = slots[i];
+                holders[i] = (BitSet) slotsToken[slot].clone();
+                slotsToken[slot].clear();
+                Integer card = slotToCard[slot];
+                if (card != null) {
+                    cardToSlot[card] = null;
+                    slotToCard[slot] = null;
+                    synchronized (setIndex) {
+                        setIndex.remove(card);
+                    }
+                    env.journal.removeCard(card, slot);
+                }
+            }
+            for (int i = 0; i < cards.length; i++) {
+                cardToSlot[cards[i]] = placed[i];
+                slotToCard[placed[i]] = cards[i];
+                env.journal.placeCard(cards[i], placed[i]);
+            }
+            synchronized (setIndex) {
+                for (int card : cards)
+                    setIndex.add(card);
+            }
+            env.ui.removeCards(slots);
+            env.ui.placeCards(cards, placed);
+            return holders;
+        } finally {
+            env.metrics.tableLockHeld(lockedTime);
+            unlockSlots(locked);
+        }
+    }
+
+    /**
+     * Locks the given slots in ascending order (so batches never deadlock each other).
+     *
+     * @return - the locked slots, sorted.
+     */
+    private int[] lockSlots(int[] slots) {
+        int[] sorted = slots.clone();
+        Arrays.sort(sorted);
+        for (int slot : sorted)
+            slotLocks[slot].lock();
+        return sorted;
+    }
+
+    private void unlockSlots(int[] sorted) {
+        for (int i = sorted.length - 1; i >= 0; i--)
+            slotLocks[sorted[i]].unlock();
     }
 
     /**
@@ -134,11 +346,21 @@ public class Table {
      * 
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return - true iff a token was placed (i.e. there is a card in the slot).
      */
-    public synchronized void placeToken(int player, int slot) {
-        if (slotToCard[slot] != null) {
-            slotsToken[slot][player] = true;
+    public boolean placeToken(int player, int slot) {
+        ReentrantLock lock = slotLocks[slot];
+        lock.lock();
+        long locked = env.metrics.startTimer();
+        try {
+            if (slotToCard[slot] == null) return false;
+            slotsToken[slot].set(player);
+            env.journal.placeToken(player, slot);
             env.ui.placeToken(player, slot);
+            return true;
+        } finally {
+            env.metrics.tableLockHeld(locked);
+            lock.unlock();
         }
     }
 
@@ -149,13 +371,19 @@ public class Table {
      * @param slot   - the slot from which to remove the token.
      * @return - true iff a token was successfully removed.
      */
-    public synchronized boolean removeToken(int player, int slot) {
-
-        if (slotsToken[slot][player]) {
-            slotsToken[slot][player] = false;
+    public boolean removeToken(int player, int slot) {
+        ReentrantLock lock = slotLocks[slot];
+        lock.lock();
+        long locked = env.metrics.startTimer();
+        try {
+            if (!slotsToken[slot].get(player)) return false;
+            slotsToken[slot].clear(player);
+            env.journal.removeToken(player, slot);
             env.ui.removeToken(player, slot);
             return true;
+        } finally {
+            env.metrics.tableLockHeld(locked);
+            lock.unlock();
         }
-        return false;
     }
 }